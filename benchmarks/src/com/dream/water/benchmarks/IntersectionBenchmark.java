@@ -0,0 +1,66 @@
+package com.dream.water.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.World;
+import com.dream.box2d.water.ClippedPolygon;
+import com.dream.box2d.water.IntersectionUtils;
+import com.dream.box2d.water.Water;
+
+/**
+ * Clipping of one fixture against the water, for a square and a circle half submerged
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntersectionBenchmark {
+
+	private World world;
+	private Water water;
+	private Fixture waterFixture;
+	private Fixture polygonFixture;
+	private Fixture circleFixture;
+	private final ClippedPolygon result = new ClippedPolygon();
+
+	@Setup
+	public void setup() {
+		world = Scenes.createWorld();
+		water = new Water(false, false);
+		water.createBody(world, 0, 0, 8, 2);
+		waterFixture = water.getBody().getFixtureList().first();
+		polygonFixture = Scenes.createBox(world, -1, 1, 0.3f).getFixtureList().first();
+		circleFixture = Scenes.createCircle(world, 1, 1, 0.3f).getFixtureList().first();
+	}
+
+	@TearDown
+	public void tearDown() {
+		world.dispose();
+	}
+
+	@Benchmark
+	public boolean polygonPolygon() {
+		return IntersectionUtils.findIntersectionOfFixtures(waterFixture, polygonFixture, result);
+	}
+
+	@Benchmark
+	public boolean circlePolygon() {
+		return IntersectionUtils.findIntersectionOfFixtures(waterFixture, circleFixture, result);
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.dream.water.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dream.box2d.water.ParticleSystem;
+
+/**
+ * Splash particles under heavy load: every step the drops that fell back into the water are replaced by new
+ * ones, so the store stays full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticleBenchmark {
+
+	@Param({ "500", "5000", "50000" })
+	public int particles;
+
+	private ParticleSystem system;
+	private Random random;
+
+	@Setup
+	public void setup() {
+		system = new ParticleSystem(particles, ParticleSystem.EvictionPolicy.OLDEST);
+		random = new Random(42);
+		splash();
+	}
+
+	private void splash() {
+		while (system.size() < system.getCapacity()) {
+			system.add(random.nextFloat() * 8, 1, random.nextFloat() * 2 - 1, 1 + random.nextFloat() * 5, 0.03f);
+		}
+	}
+
+	@Benchmark
+	public ParticleSystem update() {
+		system.update(1 / 60f, 1);
+		splash();
+		return system;
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.dream.water.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.BodyDef.BodyType;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.CircleShape;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.Shape;
+import com.badlogic.gdx.physics.box2d.World;
+import com.dream.box2d.water.WaterContactListener;
+
+/**
+ * Builds the Box2D worlds used by the benchmarks. Only the headless Box2D natives are loaded.
+ */
+final class Scenes {
+
+	private Scenes() {
+	}
+
+	/**
+	 * Creates a world with gravity that registers the contacts with water objects
+	 * @return New world
+	 */
+	static World createWorld() {
+		Box2D.init();
+		World world = new World(new Vector2(0, -10), true);
+		world.setContactListener(new WaterContactListener());
+		return world;
+	}
+
+	/**
+	 * Creates a dynamic square
+	 * @param world Box2D world
+	 * @param x Position of the center
+	 * @param y Position of the center
+	 * @param halfSize Half of the side of the square
+	 * @return New body
+	 */
+	static Body createBox(World world, float x, float y, float halfSize) {
+		PolygonShape square = new PolygonShape();
+		square.setAsBox(halfSize, halfSize);
+		return createBody(world, x, y, square);
+	}
+
+	/**
+	 * Creates a dynamic circle
+	 * @param world Box2D world
+	 * @param x Position of the center
+	 * @param y Position of the center
+	 * @param radius Radius of the circle
+	 * @return New body
+	 */
+	static Body createCircle(World world, float x, float y, float radius) {
+		CircleShape circle = new CircleShape();
+		circle.setRadius(radius);
+		return createBody(world, x, y, circle);
+	}
+
+	private static Body createBody(World world, float x, float y, Shape shape) {
+		BodyDef bodyDef = new BodyDef();
+		bodyDef.type = BodyType.DynamicBody;
+		bodyDef.position.set(x, y);
+		Body body = world.createBody(bodyDef);
+
+		FixtureDef fixtureDef = new FixtureDef();
+		fixtureDef.shape = shape;
+		fixtureDef.density = 0.5f;
+		body.createFixture(fixtureDef);
+		shape.dispose();
+		return body;
+	}
+
+}
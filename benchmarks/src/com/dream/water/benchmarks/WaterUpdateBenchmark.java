@@ -0,0 +1,79 @@
+package com.dream.water.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.physics.box2d.World;
+import com.dream.box2d.water.Water;
+
+/**
+ * Buoyancy of many bodies floating in the same water. The world is not stepped during the measurement, so every
+ * call evaluates the same contacts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaterUpdateBenchmark {
+
+	private static final int BODIES_PER_ROW = 50;
+	private static final float SPACING = 0.8f;
+
+	@Param({ "1", "10", "100", "1000" })
+	public int bodies;
+
+	private World world;
+	private Water water;
+
+	@Setup
+	public void setup() {
+		world = Scenes.createWorld();
+
+		int columns = Math.min(bodies, BODIES_PER_ROW);
+		int rows = (bodies + BODIES_PER_ROW - 1) / BODIES_PER_ROW;
+		float width = columns * SPACING + 2;
+		float height = rows * SPACING + 2;
+		water = new Water();
+		water.createBody(world, width / 2, -height / 2, width, height);
+
+		// squares and circles crossing the surface, the deeper rows completely submerged
+		for (int i = 0; i < bodies; i++) {
+			float x = 1 + (i % BODIES_PER_ROW) * SPACING + SPACING / 2;
+			float y = -(i / BODIES_PER_ROW) * SPACING;
+			if (i % 3 == 2)
+				Scenes.createCircle(world, x, y, 0.3f);
+			else
+				Scenes.createBox(world, x, y, 0.3f);
+		}
+
+		// the first step finds the new contacts and the second one begins them
+		world.step(1 / 60f, 6, 2);
+		world.step(1 / 60f, 6, 2);
+	}
+
+	@TearDown
+	public void tearDown() {
+		world.dispose();
+	}
+
+	@Benchmark
+	public void update() {
+		water.update();
+		world.clearForces();
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.dream.water.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dream.box2d.water.ExplicitWaveSolver;
+import com.dream.box2d.water.HeightField;
+import com.dream.box2d.water.ImplicitWaveSolver;
+import com.dream.box2d.water.WaveSolver;
+
+/**
+ * One step of a wave solver, as run by Water.step() for every fixed step, for different numbers of columns. A calm
+ * surface measures the cost of a lake at rest. A disturbed one is shaken again before every iteration and its end
+ * columns are pushed in every step, so all the columns stay active. With parallel enabled the explicit solver
+ * spreads in tiles run on the common fork-join pool; the implicit one ignores it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaveBenchmark {
+
+	private static final float SPACING = 0.04f;
+	private static final float TIME_STEP = 1 / 60f;
+
+	@Param({ "200", "2000", "20000", "200000" })
+	public int columns;
+
+	@Param({ "explicit", "implicit" })
+	public String solver;
+
+	@Param({ "calm", "disturbed" })
+	public String surface;
+
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	private HeightField field;
+	private WaveSolver waveSolver;
+	private boolean disturbed;
+
+	@Setup
+	public void setup() {
+		field = new HeightField(columns);
+		field.setGrid(0, SPACING);
+		if (parallel)
+			field.setParallelism(ForkJoinPool.commonPool(), 0, HeightField.DEFAULT_TILE_SIZE);
+		waveSolver = solver.equals("implicit") ? new ImplicitWaveSolver() : new ExplicitWaveSolver();
+		disturbed = surface.equals("disturbed");
+	}
+
+	@Setup(Level.Iteration)
+	public void disturb() {
+		Random random = new Random(42);
+		for (int i = 0; i < columns; i++) {
+			float height = disturbed ? 1 + (random.nextFloat() - 0.5f) * 0.1f : 1;
+			field.set(i, i * SPACING, 0, 1, height, 0);
+		}
+		if (!disturbed) {
+			// the columns settle in the first steps, as they would in a game
+			for (int i = 0; i < 10; i++) {
+				waveSolver.step(field, 0.025f, 0.025f, 0.25f, TIME_STEP);
+			}
+		}
+	}
+
+	@Benchmark
+	public HeightField step() {
+		if (disturbed) {
+			field.setSpeed(0, 0.01f);
+			field.setSpeed(columns - 1, 0.01f);
+		}
+		waveSolver.step(field, 0.025f, 0.025f, 0.25f, TIME_STEP);
+		return field;
+	}
+
+}
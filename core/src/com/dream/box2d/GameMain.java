@@ -15,7 +15,11 @@ import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.utils.viewport.StretchViewport;
+import com.dream.box2d.water.ContactEventQueue;
 import com.dream.box2d.water.Water;
+import com.dream.box2d.water.WaterContactListener;
+import com.dream.box2d.water.WaterRenderer;
+import com.dream.box2d.water.WaterStats;
 
 public class GameMain extends ApplicationAdapter {
 
@@ -23,8 +27,25 @@ public class GameMain extends ApplicationAdapter {
 	OrthographicCamera camera;
 
 	World world;
+	ContactEventQueue contactEvents;
 	Water water;
+	WaterRenderer waterRenderer;
 	Box2DDebugRenderer debugRenderer;
+	float accumulator;
+	WaterStats stats; // null unless the stats of the water are listened to
+	
+	static final float TIME_STEP = 1 / 60f;
+	
+	public GameMain() {
+	}
+	
+	/**
+	 * Constructor that measures the water in every frame
+	 * @param statsListener Listener that receives the stats of every frame
+	 */
+	public GameMain(WaterStats.Listener statsListener) {
+		stats = new WaterStats(statsListener);
+	}
 	
 	@Override
 	public void create() {
@@ -33,12 +54,15 @@ public class GameMain extends ApplicationAdapter {
 
 		// Create box2d world
 		world = new World(new Vector2(0, -10), true);
-		world.setContactListener(new MyContactListener());
+		contactEvents = new ContactEventQueue();
+		world.setContactListener(new WaterContactListener(contactEvents, null));
 		debugRenderer = new Box2DDebugRenderer();
 		
 		water = new Water();
 		water.createBody(world, 3f, 0, 8, 2); //world, x, y, width, height
-		//water.setDebugMode(true);
+		water.setStats(stats);
+		waterRenderer = new WaterRenderer(water);
+		//waterRenderer.setDebugMode(true);
 	}
 	
 	@Override
@@ -53,15 +77,27 @@ public class GameMain extends ApplicationAdapter {
 		}
 		// enable or disable debug mode
 		if(Gdx.input.isKeyJustPressed(Keys.D)){ 
-			water.setDebugMode(!water.isDebugMode());
+			waterRenderer.setDebugMode(!waterRenderer.isDebugMode());
 		}
 		
-		world.step(1/60f, 6, 2);
+		// physics run in fixed steps, the water buoyancy must be updated once per world step
+		accumulator += Math.min(Gdx.graphics.getDeltaTime(), 0.25f);
+		while (accumulator >= TIME_STEP) {
+			world.step(TIME_STEP, 6, 2);
+			contactEvents.drain();
+			water.update();
+			accumulator -= TIME_STEP;
+		}
 		
-		water.update();
-		water.draw(camera);
+		// only the waves seen by the camera are simulated
+		waterRenderer.updateView(camera);
+		water.step(Gdx.graphics.getDeltaTime());
+		waterRenderer.draw(camera);
 		
 		debugRenderer.render(world, camera.combined);
+		
+		if (stats != null)
+			stats.endFrame();
 	}
 	
 	private void createBody() {
@@ -93,6 +129,7 @@ public class GameMain extends ApplicationAdapter {
 
 	@Override
 	public void dispose() {
+		waterRenderer.dispose();
 		water.dispose();
 		world.dispose();
 		debugRenderer.dispose();
@@ -0,0 +1,183 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.Transform;
+
+/**
+ * Copy of the state of a body after a world step: transform, velocities and world center. It is read from Box2D
+ * once, and then points and velocities are found in Java instead of calling the body for each of them. Forces are
+ * also summed here and applied to the body at once, see {@link BodyStateCache#flush()}.
+ */
+public class BodyState {
+
+	Body body;
+	int frame; // update of the cache in which the state was read
+
+	// transform
+	float x, y;
+	float cos, sin;
+
+	float velocityX, velocityY;
+	float angularVelocity;
+	float centerX, centerY; // world center of mass
+
+	// net force and torque, around the center of mass, not applied yet
+	float forceX, forceY;
+	float torque;
+	boolean damped; // the angular damping of the water has been added in this step
+	BodySubmersion submersion; // parts of the body under the water that is being updated
+
+	/**
+	 * Reads the state of a body from Box2D
+	 * @param body Body to read
+	 */
+	public void set(Body body) {
+		setTransform(body);
+		forceX = forceY = torque = 0;
+		damped = false;
+
+		Vector2 velocity = body.getLinearVelocity();
+		velocityX = velocity.x;
+		velocityY = velocity.y;
+		angularVelocity = body.getAngularVelocity();
+
+		Vector2 center = body.getWorldCenter();
+		centerX = center.x;
+		centerY = center.y;
+	}
+
+	/**
+	 * Reads only the transform of a body, when the velocities are not needed
+	 * @param body Body to read
+	 */
+	public void setTransform(Body body) {
+		this.body = body;
+		float[] transform = body.getTransform().vals;
+		x = transform[Transform.POS_X];
+		y = transform[Transform.POS_Y];
+		cos = transform[Transform.COS];
+		sin = transform[Transform.SIN];
+	}
+
+	/**
+	 * Same as {@link Body#getWorldPoint(Vector2)}, x coordinate
+	 * @param localX Position of the x coordinate of the point in body coordinates
+	 * @param localY Position of the y coordinate of the point in body coordinates
+	 * @return Position of the x coordinate in world coordinates
+	 */
+	public float worldX(float localX, float localY) {
+		return cos * localX - sin * localY + x;
+	}
+
+	/**
+	 * Same as {@link Body#getWorldPoint(Vector2)}, y coordinate
+	 * @param localX Position of the x coordinate of the point in body coordinates
+	 * @param localY Position of the y coordinate of the point in body coordinates
+	 * @return Position of the y coordinate in world coordinates
+	 */
+	public float worldY(float localX, float localY) {
+		return sin * localX + cos * localY + y;
+	}
+
+	/**
+	 * Same as {@link Body#getLinearVelocityFromWorldPoint(Vector2)}, x coordinate
+	 * @param worldX Position of the x coordinate of the point
+	 * @param worldY Position of the y coordinate of the point
+	 * @return Velocity of the point on the x-axis
+	 */
+	public float velocityX(float worldX, float worldY) {
+		return velocityX - angularVelocity * (worldY - centerY);
+	}
+
+	/**
+	 * Same as {@link Body#getLinearVelocityFromWorldPoint(Vector2)}, y coordinate
+	 * @param worldX Position of the x coordinate of the point
+	 * @param worldY Position of the y coordinate of the point
+	 * @return Velocity of the point on the y-axis
+	 */
+	public float velocityY(float worldX, float worldY) {
+		return velocityY + angularVelocity * (worldX - centerX);
+	}
+
+	/**
+	 * Adds a force at a world point, as {@link Body#applyForce(float, float, float, float, boolean)} does
+	 * @param fx Force on the x-axis
+	 * @param fy Force on the y-axis
+	 * @param pointX Position of the x coordinate of the point
+	 * @param pointY Position of the y coordinate of the point
+	 */
+	public void addForce(float fx, float fy, float pointX, float pointY) {
+		forceX += fx;
+		forceY += fy;
+		torque += (pointX - centerX) * fy - (pointY - centerY) * fx;
+	}
+
+	/**
+	 * Adds a torque
+	 * @param torque Torque
+	 */
+	public void addTorque(float torque) {
+		this.torque += torque;
+	}
+
+	/**
+	 * Applies the summed force and torque to the body with two calls, and resets them
+	 */
+	public void applyForces() {
+		if (forceX != 0 || forceY != 0)
+			body.applyForceToCenter(forceX, forceY, true);
+		if (torque != 0)
+			body.applyTorque(torque, true);
+		forceX = forceY = torque = 0;
+	}
+
+	public Body getBody() {
+		return body;
+	}
+
+	public float getX() {
+		return x;
+	}
+
+	public float getY() {
+		return y;
+	}
+
+	public float getAngle() {
+		return (float) Math.atan2(sin, cos);
+	}
+
+	public float getVelocityX() {
+		return velocityX;
+	}
+
+	public float getVelocityY() {
+		return velocityY;
+	}
+
+	public float getAngularVelocity() {
+		return angularVelocity;
+	}
+
+	public float getCenterX() {
+		return centerX;
+	}
+
+	public float getCenterY() {
+		return centerY;
+	}
+
+	public float getForceX() {
+		return forceX;
+	}
+
+	public float getForceY() {
+		return forceY;
+	}
+
+	public float getTorque() {
+		return torque;
+	}
+
+}
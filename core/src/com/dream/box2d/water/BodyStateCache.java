@@ -0,0 +1,97 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * States of the bodies that touch the water, read from Box2D at most once per world step. Call {@link #begin()}
+ * after every world step; the state of a body is read the first time it is asked for after it. The states of the
+ * bodies that were not asked for during the previous step are dropped and reused. Forces added to the states are
+ * applied with {@link #flush()}. A cache can be shared by several water objects, so a body that touches all of
+ * them gets one force and one torque.
+ */
+public class BodyStateCache {
+
+	private final ObjectMap<Body, BodyState> states = new ObjectMap<Body, BodyState>();
+	private final Array<BodyState> used = new Array<BodyState>(false, 16); // states in the map
+	private final Array<BodyState> free = new Array<BodyState>(false, 16); // states ready to be reused
+	private int frame;
+
+	/**
+	 * Starts a new world step. States read before are stale from now on.
+	 */
+	public void begin() {
+		frame++;
+		for (int i = used.size - 1; i >= 0; i--) {
+			BodyState state = used.get(i);
+			if (state.frame < frame - 1) {
+				states.remove(state.body);
+				state.body = null;
+				used.removeIndex(i);
+				free.add(state);
+			}
+		}
+	}
+
+	/**
+	 * Gets the state of a body in the current step, reading it from Box2D if it is the first time
+	 * @param body Body
+	 * @return State of the body. Owned by the cache, so it must not be kept after the step
+	 */
+	public BodyState get(Body body) {
+		BodyState state = states.get(body);
+		if (state == null) {
+			state = free.size > 0 ? free.pop() : new BodyState();
+			states.put(body, state);
+			used.add(state);
+		} else if (state.frame == frame) {
+			return state;
+		}
+
+		state.frame = frame;
+		state.set(body);
+		return state;
+	}
+
+	/**
+	 * Applies the forces summed in this step, one force and one torque per body
+	 */
+	public void flush() {
+		for (int i = 0; i < used.size; i++) {
+			BodyState state = used.get(i);
+			if (state.frame == frame)
+				state.applyForces();
+		}
+	}
+
+	/**
+	 * Drops the state of a body, for example when it is destroyed
+	 * @param body Body
+	 */
+	public void remove(Body body) {
+		BodyState state = states.remove(body);
+		if (state != null) {
+			state.body = null;
+			used.removeValue(state, true);
+			free.add(state);
+		}
+	}
+
+	/**
+	 * Drops all the states
+	 */
+	public void clear() {
+		for (int i = 0; i < used.size; i++) {
+			used.get(i).body = null;
+		}
+		free.addAll(used);
+		used.clear();
+		states.clear();
+	}
+
+	public int size() {
+		return states.size;
+	}
+
+}
@@ -0,0 +1,360 @@
+package com.dream.box2d.water;
+
+import java.util.Arrays;
+
+/**
+ * Parts of one body that are under a water object, one convex polygon per fixture, with their total area and
+ * centroid. Fixtures of the same body may overlap, so the area of their union is found by removing from every
+ * polygon the parts that are inside the polygons before it. A polygon is cut by the sides of an earlier polygon
+ * into convex pieces outside of it, the pieces are cut again by the next earlier polygons, and the parts left
+ * inside are subtracted. Those parts don't overlap, so only positive areas are subtracted, and the cost grows
+ * with the number of pieces instead of the number of groups of fixtures.
+ */
+class BodySubmersion {
+
+	BodyState state;
+
+	float[] vertices = new float[64]; // vertices of every polygon, interleaved x and y values
+	int[] starts = new int[4]; // index of the first value of every polygon
+	int[] counts = new int[4]; // vertices of every polygon
+	float[] bounds = new float[16]; // min x, min y, max x and max y of every polygon
+	int polygons;
+	int size; // values used in vertices
+
+	private Pieces pieces = new Pieces(); // parts of the current polygon outside the earlier ones
+	private Pieces nextPieces = new Pieces();
+	private float[] remaining = new float[32]; // part of a piece not yet cut by every side of a polygon
+	private float[] inside = new float[32];
+	private float[] outside = new float[32];
+
+	// doubles, as the overlaps are subtracted from the sum of every area
+	double area;
+	double momentX, momentY; // area times the position of the centroid
+
+	/**
+	 * Empties the polygons
+	 * @param state Body whose polygons are added
+	 */
+	void reset(BodyState state) {
+		this.state = state;
+		polygons = 0;
+		size = 0;
+		area = momentX = momentY = 0;
+	}
+
+	/**
+	 * Adds the submerged part of a fixture
+	 * @param polygon Result of the clipping between the water and the fixture
+	 */
+	void add(ClippedPolygon polygon) {
+		float polygonArea = polygon.getArea();
+		area += polygonArea;
+		momentX += polygonArea * polygon.getCentroid().x;
+		momentY += polygonArea * polygon.getCentroid().y;
+
+		int count = polygon.getCount();
+		if (count == 0)
+			return;
+		if (polygons == starts.length) {
+			starts = Arrays.copyOf(starts, polygons * 2);
+			counts = Arrays.copyOf(counts, polygons * 2);
+			bounds = Arrays.copyOf(bounds, polygons * 8);
+		}
+		if (size + count * 2 > vertices.length)
+			vertices = Arrays.copyOf(vertices, Math.max(vertices.length * 2, size + count * 2));
+
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		float[] source = polygon.getVertices();
+		for (int i = 0; i < count * 2; i += 2) {
+			float x = source[i], y = source[i + 1];
+			vertices[size + i] = x;
+			vertices[size + i + 1] = y;
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+
+		starts[polygons] = size;
+		counts[polygons] = count;
+		bounds[polygons * 4] = minX;
+		bounds[polygons * 4 + 1] = minY;
+		bounds[polygons * 4 + 2] = maxX;
+		bounds[polygons * 4 + 3] = maxY;
+		polygons++;
+		size += count * 2;
+	}
+
+	/**
+	 * Replaces the sum of the areas of the polygons with the area of their union, and moves the centroid with it
+	 */
+	void removeOverlaps() {
+		for (int j = 1; j < polygons; j++) {
+			if (counts[j] < 3)
+				continue;
+			boolean cut = false;
+			for (int i = 0; i < j; i++) {
+				if (counts[i] < 3 || !overlaps(bounds, i, bounds, j))
+					continue;
+				if (!cut) {
+					pieces.clear();
+					pieces.add(vertices, starts[j], counts[j]);
+					cut = true;
+				}
+				removePolygon(i);
+				if (pieces.count == 0) // nothing left of this polygon
+					break;
+			}
+		}
+		if (area < 0) // rounding errors
+			area = 0;
+	}
+
+	/**
+	 * Removes a polygon from the pieces of the current polygon. The parts of the pieces inside it are subtracted
+	 * from the area, and the parts outside are kept as the new pieces.
+	 * @param polygon Index of the polygon
+	 */
+	private void removePolygon(int polygon) {
+		Pieces result = nextPieces;
+		result.clear();
+		int polygonStart = starts[polygon], polygonCount = counts[polygon];
+		for (int k = 0; k < pieces.count; k++) {
+			int start = pieces.starts[k], count = pieces.counts[k];
+			if (!overlaps(pieces.bounds, k, bounds, polygon) || isSeparated(pieces.vertices, start, count, polygon)) {
+				result.add(pieces.vertices, start, count);
+				continue;
+			}
+
+			// every side adds at most one vertex
+			if (remaining.length < (count + polygonCount) * 2)
+				growBuffers((count + polygonCount) * 2);
+			System.arraycopy(pieces.vertices, start, remaining, 0, count * 2);
+			int left = count;
+			float x1 = vertices[polygonStart + (polygonCount - 1) * 2];
+			float y1 = vertices[polygonStart + (polygonCount - 1) * 2 + 1];
+			for (int e = 0; e < polygonCount && left >= 3; e++) {
+				float x2 = vertices[polygonStart + e * 2];
+				float y2 = vertices[polygonStart + e * 2 + 1];
+				left = split(left, x1, y1, x2, y2, result);
+				x1 = x2;
+				y1 = y2;
+			}
+			if (left < 3)
+				continue;
+
+			// what is left is inside the polygon
+			float ox = remaining[0], oy = remaining[1];
+			float removedArea = 0, removedX = 0, removedY = 0;
+			float px = remaining[(left - 1) * 2] - ox, py = remaining[(left - 1) * 2 + 1] - oy;
+			for (int v = 0; v < left; v++) {
+				float lx = remaining[v * 2] - ox, ly = remaining[v * 2 + 1] - oy;
+				float cross = px * ly - lx * py;
+				removedArea += cross;
+				removedX += (px + lx) * cross;
+				removedY += (py + ly) * cross;
+				px = lx;
+				py = ly;
+			}
+			if (removedArea > 0) {
+				removedArea *= 0.5f;
+				area -= removedArea;
+				momentX -= removedX / 6 + ox * removedArea;
+				momentY -= removedY / 6 + oy * removedArea;
+			}
+		}
+
+		nextPieces = pieces;
+		pieces = result;
+	}
+
+	/**
+	 * Splits the remaining part of a piece by the line of a side of a counter-clockwise polygon. The part outside
+	 * is added to the pieces and the remaining part is replaced with the part inside.
+	 * @param count Vertices of the remaining part
+	 * @param x1 Position of the x coordinate of the start of the side
+	 * @param y1 Position of the y coordinate of the start of the side
+	 * @param x2 Position of the x coordinate of the end of the side
+	 * @param y2 Position of the y coordinate of the end of the side
+	 * @param result Pieces that get the part outside
+	 * @return Vertices of the part inside
+	 */
+	private int split(int count, float x1, float y1, float x2, float y2, Pieces result) {
+		float edgeX = x2 - x1, edgeY = y2 - y1;
+		int in = 0, out = 0;
+		float outArea = 0;
+		float sx = remaining[(count - 1) * 2];
+		float sy = remaining[(count - 1) * 2 + 1];
+		float sSide = edgeX * (sy - y1) - edgeY * (sx - x1);
+		for (int i = 0; i < count; i++) {
+			float ex = remaining[i * 2];
+			float ey = remaining[i * 2 + 1];
+			float eSide = edgeX * (ey - y1) - edgeY * (ex - x1);
+			if ((eSide > 0) != (sSide > 0)) {
+				// the side crosses the line, the crossing point is in both parts
+				float t = sSide / (sSide - eSide);
+				float ix = sx + (ex - sx) * t;
+				float iy = sy + (ey - sy) * t;
+				inside[in * 2] = ix;
+				inside[in * 2 + 1] = iy;
+				outside[out * 2] = ix;
+				outside[out * 2 + 1] = iy;
+				in++;
+				out++;
+			}
+			if (eSide > 0) {
+				inside[in * 2] = ex;
+				inside[in * 2 + 1] = ey;
+				in++;
+			} else {
+				outside[out * 2] = ex;
+				outside[out * 2 + 1] = ey;
+				out++;
+			}
+			sx = ex;
+			sy = ey;
+			sSide = eSide;
+		}
+
+		if (out >= 3) {
+			// parts on the line have no area
+			for (int i = 0, j = out - 1; i < out; j = i++) {
+				outArea += (outside[j * 2] - outside[0]) * (outside[i * 2 + 1] - outside[1])
+						- (outside[i * 2] - outside[0]) * (outside[j * 2 + 1] - outside[1]);
+			}
+			if (outArea > 0)
+				result.add(outside, 0, out);
+		}
+
+		float[] swap = remaining;
+		remaining = inside;
+		inside = swap;
+		return in;
+	}
+
+	/**
+	 * Checks if a side of a polygon leaves a whole piece outside, so they don't intersect
+	 * @param pieceVertices Vertices of the pieces
+	 * @param start Index of the first value of the piece
+	 * @param count Vertices of the piece
+	 * @param polygon Index of the polygon
+	 * @return True if the piece is out of the polygon
+	 */
+	private boolean isSeparated(float[] pieceVertices, int start, int count, int polygon) {
+		int polygonStart = starts[polygon], polygonCount = counts[polygon];
+		float x1 = vertices[polygonStart + (polygonCount - 1) * 2];
+		float y1 = vertices[polygonStart + (polygonCount - 1) * 2 + 1];
+		for (int e = 0; e < polygonCount; e++) {
+			float x2 = vertices[polygonStart + e * 2];
+			float y2 = vertices[polygonStart + e * 2 + 1];
+			float edgeX = x2 - x1, edgeY = y2 - y1;
+			boolean separated = true;
+			for (int i = 0; i < count && separated; i++) {
+				float x = pieceVertices[start + i * 2], y = pieceVertices[start + i * 2 + 1];
+				separated = edgeX * (y - y1) - edgeY * (x - x1) <= 0;
+			}
+			if (separated)
+				return true;
+			x1 = x2;
+			y1 = y2;
+		}
+		return false;
+	}
+
+	private void growBuffers(int size) {
+		size = Math.max(size, remaining.length * 2);
+		remaining = new float[size];
+		inside = new float[size];
+		outside = new float[size];
+	}
+
+	/**
+	 * Checks if two bounding boxes overlap
+	 * @param boundsA Min x, min y, max x and max y of every box of the first array
+	 * @param a Index of the first box
+	 * @param boundsB Min x, min y, max x and max y of every box of the second array
+	 * @param b Index of the second box
+	 * @return True if they overlap or touch
+	 */
+	private static boolean overlaps(float[] boundsA, int a, float[] boundsB, int b) {
+		return boundsA[a * 4] <= boundsB[b * 4 + 2] && boundsB[b * 4] <= boundsA[a * 4 + 2]
+				&& boundsA[a * 4 + 1] <= boundsB[b * 4 + 3] && boundsB[b * 4 + 1] <= boundsA[a * 4 + 3];
+	}
+
+	float getCentroidX() {
+		return (float) (momentX / area);
+	}
+
+	float getCentroidY() {
+		return (float) (momentY / area);
+	}
+
+	float getMinX() {
+		float minX = Float.MAX_VALUE;
+		for (int i = 0; i < polygons; i++) {
+			minX = Math.min(minX, bounds[i * 4]);
+		}
+		return minX;
+	}
+
+	float getMaxX() {
+		float maxX = -Float.MAX_VALUE;
+		for (int i = 0; i < polygons; i++) {
+			maxX = Math.max(maxX, bounds[i * 4 + 2]);
+		}
+		return maxX;
+	}
+
+	/**
+	 * Convex polygons stored one after the other, with their bounding boxes
+	 */
+	private static class Pieces {
+
+		float[] vertices = new float[64]; // interleaved x and y values
+		int[] starts = new int[8]; // index of the first value of every piece
+		int[] counts = new int[8]; // vertices of every piece
+		float[] bounds = new float[32]; // min x, min y, max x and max y of every piece
+		int size; // values used in vertices
+		int count;
+
+		void clear() {
+			size = count = 0;
+		}
+
+		/**
+		 * Adds a piece
+		 * @param source Array with the vertices of the piece
+		 * @param start Index of the first value of the piece
+		 * @param n Vertices of the piece
+		 */
+		void add(float[] source, int start, int n) {
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, count * 2);
+				counts = Arrays.copyOf(counts, count * 2);
+				bounds = Arrays.copyOf(bounds, count * 8);
+			}
+			if (size + n * 2 > vertices.length)
+				vertices = Arrays.copyOf(vertices, Math.max(vertices.length * 2, size + n * 2));
+
+			float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+			for (int i = 0; i < n * 2; i += 2) {
+				float x = source[start + i], y = source[start + i + 1];
+				vertices[size + i] = x;
+				vertices[size + i + 1] = y;
+				minX = Math.min(minX, x);
+				maxX = Math.max(maxX, x);
+				minY = Math.min(minY, y);
+				maxY = Math.max(maxY, y);
+			}
+
+			starts[count] = size;
+			counts[count] = n;
+			bounds[count * 4] = minX;
+			bounds[count * 4 + 1] = minY;
+			bounds[count * 4 + 2] = maxX;
+			bounds[count * 4 + 3] = maxY;
+			count++;
+			size += n * 2;
+		}
+	}
+}
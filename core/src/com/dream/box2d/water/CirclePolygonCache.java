@@ -0,0 +1,135 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.CircleShape;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Regular polygons used instead of circle fixtures where the clipping needs vertices (drag, lift and splashes).
+ * Every polygon is created once in the local space of its body and kept until the fixture is removed. libGDX
+ * reuses the fixture objects, so an entry is created again if the radius or position of the circle changes. The
+ * entries of the removed fixtures are reused, so bodies that come in and out of the water don't allocate.
+ */
+public class CirclePolygonCache {
+
+	public static final int DEFAULT_SEGMENTS = 16;
+
+	private int segments;
+	private final ObjectMap<Fixture, Entry> polygons = new ObjectMap<Fixture, Entry>();
+	private final Array<Entry> freeEntries = new Array<Entry>(false, 16);
+
+	/**
+	 * Main constructor. Circles are approximated with {@link #DEFAULT_SEGMENTS} sides.
+	 */
+	public CirclePolygonCache() {
+		this(DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * Constructor that allows to specify the sides of the polygons
+	 * @param segments Number of sides of every polygon
+	 */
+	public CirclePolygonCache(int segments) {
+		setSegments(segments);
+	}
+
+	/**
+	 * Gets the polygon of a circle fixture, creating it the first time
+	 * @param fixture Circle fixture
+	 * @return Counter-clockwise vertices in the local space of the body, interleaved x and y values
+	 */
+	public float[] get(Fixture fixture) {
+		CircleShape circle = (CircleShape) fixture.getShape();
+		float radius = circle.getRadius();
+		Vector2 position = circle.getPosition();
+
+		Entry entry = polygons.get(fixture);
+		if (entry == null) {
+			entry = freeEntries.size > 0 ? freeEntries.pop() : new Entry(segments);
+			polygons.put(fixture, entry);
+		} else if (entry.radius == radius && entry.x == position.x && entry.y == position.y) {
+			return entry.vertices;
+		}
+
+		entry.radius = radius;
+		entry.x = position.x;
+		entry.y = position.y;
+		fill(radius, position.x, position.y, segments, entry.vertices);
+		return entry.vertices;
+	}
+
+	/**
+	 * Fills the vertices of a regular polygon with the same area as a circle, so the buoyancy of the cases that
+	 * still use the polygon is not lower than the one of the circle. StrictMath gives the same vertices on every
+	 * platform.
+	 * @param radius Radius of the circle
+	 * @param x Position of the x coordinate of the center
+	 * @param y Position of the y coordinate of the center
+	 * @param segments Number of sides
+	 * @param out It will be set with the counter-clockwise vertices, interleaved x and y values
+	 */
+	public static void fill(float radius, float x, float y, int segments, float[] out) {
+		float step = MathUtils.PI2 / segments;
+		float r = radius * (float) Math.sqrt(MathUtils.PI2 / (segments * StrictMath.sin(step)));
+		for (int i = 0; i < segments; i++) {
+			out[i * 2] = x + r * (float) StrictMath.cos(i * step);
+			out[i * 2 + 1] = y + r * (float) StrictMath.sin(i * step);
+		}
+	}
+
+	/**
+	 * Removes the polygon of a fixture. Should be called when the fixture is no longer in contact with the water.
+	 * @param fixture Circle fixture
+	 */
+	public void remove(Fixture fixture) {
+		Entry entry = polygons.remove(fixture);
+		if (entry != null)
+			freeEntries.add(entry);
+	}
+
+	/**
+	 * Removes all the polygons
+	 */
+	public void clear() {
+		for (Entry entry : polygons.values()) {
+			freeEntries.add(entry);
+		}
+		polygons.clear();
+	}
+
+	public int size() {
+		return polygons.size;
+	}
+
+	public int getSegments() {
+		return segments;
+	}
+
+	/**
+	 * Changes the sides of the polygons. The cached polygons are discarded.
+	 * @param segments Number of sides of every polygon, at least 3
+	 */
+	public void setSegments(int segments) {
+		if (segments < 3)
+			throw new IllegalArgumentException("A polygon needs at least 3 sides: " + segments);
+		this.segments = segments;
+		polygons.clear();
+		freeEntries.clear();
+	}
+
+	/**
+	 * Polygon of one fixture and the circle used to create it
+	 */
+	private static class Entry {
+		final float[] vertices;
+		float radius, x, y;
+
+		Entry(int segments) {
+			vertices = new float[segments * 2];
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Reusable buffers for the intersection between two convex polygons. Vertices are interleaved x and y values.
+ * The arrays only grow when a pair of polygons with more vertices than ever before is clipped.
+ */
+public class ClippedPolygon {
+
+	float[] subject; // vertices of the polygon to clip (water)
+	float[] clip; // vertices of the clipping polygon (dynamic body)
+	float[] vertices; // result of the clipping
+	float[] scratch; // ping-pong buffer used between clip edges
+	int subjectCount;
+	int clipCount;
+	int count;
+	float area;
+	final Vector2 centroid = new Vector2();
+	final Vector2 tmp = new Vector2();
+	final BodyState subjectState = new BodyState(); // transforms used when the caller has no body states
+	final BodyState clipState = new BodyState();
+
+	/**
+	 * Main constructor. Allocates enough room to clip two Box2D polygons.
+	 */
+	public ClippedPolygon() {
+		this(8);
+	}
+
+	/**
+	 * Constructor that allows to specify the max vertices of each polygon
+	 * @param maxVertices Max vertices of the subject and the clipping polygons
+	 */
+	public ClippedPolygon(int maxVertices) {
+		subject = new float[maxVertices * 2];
+		clip = new float[maxVertices * 2];
+		vertices = new float[maxVertices * 4];
+		scratch = new float[maxVertices * 4];
+	}
+
+	/**
+	 * Makes sure that the buffers can hold polygons with the given number of vertices
+	 * @param subjectVertices Vertices of the polygon to clip
+	 * @param clipVertices Vertices of the clipping polygon
+	 */
+	public void ensureCapacity(int subjectVertices, int clipVertices) {
+		if (subject.length < subjectVertices * 2)
+			subject = new float[subjectVertices * 2];
+		if (clip.length < clipVertices * 2)
+			clip = new float[clipVertices * 2];
+		int max = (subjectVertices + clipVertices) * 2;
+		if (vertices.length < max) {
+			vertices = new float[max];
+			scratch = new float[max];
+		}
+	}
+
+	/**
+	 * @return Vertices of the result. Only the first {@link #getCount()} * 2 values are valid
+	 */
+	public float[] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * @return Number of vertices of the result
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	public float getArea() {
+		return area;
+	}
+
+	public Vector2 getCentroid() {
+		return centroid;
+	}
+
+	public float getX(int i) {
+		return vertices[i * 2];
+	}
+
+	public float getY(int i) {
+		return vertices[i * 2 + 1];
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.physics.box2d.Fixture;
+
+/**
+ * Lock-free queue of the contacts that begin and end between water objects and other fixtures. Give it to the
+ * {@link WaterContactListener} so the Box2D callbacks only record the events, and call {@link #drain()} after the
+ * world step to apply them to the {@link ContactRegistry} of every water object in one batch, in the order they
+ * happened. There must be a single producer, the thread that steps the world, and a single consumer, the thread
+ * that updates the water; they can be different.
+ * <p>
+ * Events are kept in preallocated rings, so no object is created per event. Contact events can't be dropped, or
+ * the water would keep pairs that no longer touch, so when the ring is full the producer moves to a new ring with
+ * twice the capacity and the consumer follows it once the old one is empty. After that the bigger ring is reused.
+ */
+public class ContactEventQueue {
+
+	private static class Ring {
+		final int mask;
+		final Water[] waters;
+		final Fixture[] waterFixtures;
+		final Fixture[] bodyFixtures;
+		final boolean[] begins;
+
+		// positions only grow, the slot is the position modulo the capacity
+		volatile int head; // next event to read, written by the consumer
+		volatile int tail; // next event to write, written by the producer
+		volatile Ring next; // ring that follows this one when it was full, written by the producer
+
+		Ring(int capacity) {
+			mask = capacity - 1;
+			waters = new Water[capacity];
+			waterFixtures = new Fixture[capacity];
+			bodyFixtures = new Fixture[capacity];
+			begins = new boolean[capacity];
+		}
+	}
+
+	private Ring producer; // only used by the producer
+	private Ring consumer; // only used by the consumer
+
+	/**
+	 * Main constructor
+	 */
+	public ContactEventQueue() {
+		this(1024);
+	}
+
+	/**
+	 * Constructor that allows to specify the initial capacity
+	 * @param capacity Number of events that can be queued before growing, rounded up to a power of two
+	 */
+	public ContactEventQueue(int capacity) {
+		producer = consumer = new Ring(Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1);
+	}
+
+	/**
+	 * Adds an event. Called by the producer.
+	 * @param water Water object whose fixture is in the contact
+	 * @param waterFixture Fixture of the water
+	 * @param bodyFixture Fixture of the other body
+	 * @param begin True if the contact begins, false if it ends
+	 */
+	public void offer(Water water, Fixture waterFixture, Fixture bodyFixture, boolean begin) {
+		Ring ring = producer;
+		int t = ring.tail;
+		if (t - ring.head > ring.mask) {
+			Ring next = new Ring((ring.mask + 1) * 2);
+			ring.next = next; // the consumer moves to the new ring when the old one is empty
+			producer = ring = next;
+			t = 0;
+		}
+		int slot = t & ring.mask;
+		ring.waters[slot] = water;
+		ring.waterFixtures[slot] = waterFixture;
+		ring.bodyFixtures[slot] = bodyFixture;
+		ring.begins[slot] = begin;
+		ring.tail = t + 1; // publishes the event
+	}
+
+	/**
+	 * Applies the events added so far to the water objects. Called by the consumer.
+	 * @return Number of events applied
+	 */
+	public int drain() {
+		int count = 0;
+		while (true) {
+			Ring ring = consumer;
+			Ring next = ring.next;
+			// the tail doesn't change once the next ring is set, so read it after
+			count += drain(ring, ring.tail);
+			if (next == null)
+				return count;
+			consumer = next;
+		}
+	}
+
+	/**
+	 * @return True if there are no events to apply. Only exact on the consumer.
+	 */
+	public boolean isEmpty() {
+		Ring ring = consumer;
+		return ring.head == ring.tail && ring.next == null;
+	}
+
+	/**
+	 * @return Number of events that can be queued before growing
+	 */
+	public int getCapacity() {
+		return producer.mask + 1;
+	}
+
+	private static int drain(Ring ring, int t) {
+		int h = ring.head;
+		for (int i = h; i != t; i++) {
+			int slot = i & ring.mask;
+			Water water = ring.waters[slot];
+			if (ring.begins[slot])
+				water.beginContact(ring.waterFixtures[slot], ring.bodyFixtures[slot]);
+			else
+				water.endContact(ring.waterFixtures[slot], ring.bodyFixtures[slot]);
+			// release the fixtures, Box2D reuses the objects of the destroyed ones
+			ring.waters[slot] = null;
+			ring.waterFixtures[slot] = null;
+			ring.bodyFixtures[slot] = null;
+		}
+		ring.head = t; // frees the slots
+		return t - h;
+	}
+
+}
@@ -0,0 +1,235 @@
+package com.dream.box2d.water;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.physics.box2d.Fixture;
+
+/**
+ * Contacts between the fixtures of a water object and the fixtures of other bodies. Pairs are kept in dense arrays
+ * so they can be visited by index without an iterator, and found through an open addressing table on the identity
+ * of both fixtures, so adding and removing is O(1). A pair of fixtures can touch in several points (chain shapes
+ * have one contact per child), so every pair counts its contacts and is removed when the last one ends.
+ */
+public class ContactRegistry {
+
+	private Fixture[] waterFixtures;
+	private Fixture[] bodyFixtures;
+	private int[] counts; // contacts of every pair
+	private int[] hashes; // hash of every pair
+	private int size;
+
+	private int[] table; // index + 1 of the pair in the dense arrays, 0 if the slot is empty
+	private int mask;
+
+	/**
+	 * Main constructor
+	 */
+	public ContactRegistry() {
+		this(16);
+	}
+
+	/**
+	 * Constructor that allows to specify the initial capacity
+	 * @param capacity Number of pairs that can be stored before growing
+	 */
+	public ContactRegistry(int capacity) {
+		capacity = Math.max(capacity, 4);
+		waterFixtures = new Fixture[capacity];
+		bodyFixtures = new Fixture[capacity];
+		counts = new int[capacity];
+		hashes = new int[capacity];
+		createTable(capacity);
+	}
+
+	/**
+	 * Adds a contact between two fixtures
+	 * @param waterFixture Fixture of the water
+	 * @param bodyFixture Fixture of the other body
+	 * @return True if the fixtures were not in contact before
+	 */
+	public boolean add(Fixture waterFixture, Fixture bodyFixture) {
+		int hash = hash(waterFixture, bodyFixture);
+		int slot = find(waterFixture, bodyFixture, hash);
+		if (slot >= 0) {
+			counts[table[slot] - 1]++;
+			return false;
+		}
+
+		if (size == waterFixtures.length) {
+			grow();
+			slot = find(waterFixture, bodyFixture, hash);
+		}
+
+		int index = size++;
+		waterFixtures[index] = waterFixture;
+		bodyFixtures[index] = bodyFixture;
+		counts[index] = 1;
+		hashes[index] = hash;
+		table[-slot - 1] = index + 1;
+		return true;
+	}
+
+	/**
+	 * Removes a contact between two fixtures. The pair is removed when its last contact ends.
+	 * @param waterFixture Fixture of the water
+	 * @param bodyFixture Fixture of the other body
+	 * @return True if the fixtures are no longer in contact
+	 */
+	public boolean remove(Fixture waterFixture, Fixture bodyFixture) {
+		int slot = find(waterFixture, bodyFixture, hash(waterFixture, bodyFixture));
+		if (slot < 0)
+			return false;
+
+		int index = table[slot] - 1;
+		if (--counts[index] > 0)
+			return false;
+
+		removeSlot(slot);
+
+		// move the last pair to the place of the removed one
+		int last = --size;
+		if (index != last) {
+			table[slotOf(last)] = index + 1;
+			waterFixtures[index] = waterFixtures[last];
+			bodyFixtures[index] = bodyFixtures[last];
+			counts[index] = counts[last];
+			hashes[index] = hashes[last];
+		}
+		waterFixtures[last] = null;
+		bodyFixtures[last] = null;
+		return true;
+	}
+
+	/**
+	 * @param waterFixture Fixture of the water
+	 * @param bodyFixture Fixture of the other body
+	 * @return True if the fixtures are in contact
+	 */
+	public boolean contains(Fixture waterFixture, Fixture bodyFixture) {
+		return find(waterFixture, bodyFixture, hash(waterFixture, bodyFixture)) >= 0;
+	}
+
+	/**
+	 * Removes all the pairs
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			waterFixtures[i] = null;
+			bodyFixtures[i] = null;
+		}
+		size = 0;
+		for (int i = 0; i < table.length; i++) {
+			table[i] = 0;
+		}
+	}
+
+	/**
+	 * @return Number of pairs of fixtures in contact
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param i Index of the pair, from 0 to {@link #size()} - 1. Indices change when a pair is removed
+	 * @return Fixture of the water
+	 */
+	public Fixture getWaterFixture(int i) {
+		return waterFixtures[i];
+	}
+
+	/**
+	 * @param i Index of the pair, from 0 to {@link #size()} - 1. Indices change when a pair is removed
+	 * @return Fixture of the other body
+	 */
+	public Fixture getBodyFixture(int i) {
+		return bodyFixtures[i];
+	}
+
+	/**
+	 * @param i Index of the pair, from 0 to {@link #size()} - 1. Indices change when a pair is removed
+	 * @return Number of contacts between the two fixtures
+	 */
+	public int getContactCount(int i) {
+		return counts[i];
+	}
+
+	static int hash(Fixture waterFixture, Fixture bodyFixture) {
+		int h = System.identityHashCode(waterFixture) * 31 + System.identityHashCode(bodyFixture);
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Finds the slot of a pair
+	 * @return Slot of the pair, or -(empty slot) - 1 where it would be added
+	 */
+	private int find(Fixture waterFixture, Fixture bodyFixture, int hash) {
+		int slot = hash & mask;
+		while (table[slot] != 0) {
+			int index = table[slot] - 1;
+			if (waterFixtures[index] == waterFixture && bodyFixtures[index] == bodyFixture)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -slot - 1;
+	}
+
+	/**
+	 * Finds the slot that points to a pair that is known to be in the table
+	 */
+	private int slotOf(int index) {
+		int slot = hashes[index] & mask;
+		while (table[slot] != index + 1) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Empties a slot, moving back the next pairs of the probe sequence so no tombstones are needed
+	 */
+	private void removeSlot(int hole) {
+		int next = (hole + 1) & mask;
+		while (table[next] != 0) {
+			int home = hashes[table[next] - 1] & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				table[hole] = table[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		table[hole] = 0;
+	}
+
+	private void grow() {
+		int capacity = waterFixtures.length * 2;
+		waterFixtures = Arrays.copyOf(waterFixtures, capacity);
+		bodyFixtures = Arrays.copyOf(bodyFixtures, capacity);
+		counts = Arrays.copyOf(counts, capacity);
+		hashes = Arrays.copyOf(hashes, capacity);
+
+		createTable(capacity);
+		for (int i = 0; i < size; i++) {
+			int slot = hashes[i] & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i + 1;
+		}
+	}
+
+	/**
+	 * Creates an empty table with at least twice the slots of the capacity, so it is never more than half full
+	 */
+	private void createTable(int capacity) {
+		int slots = Integer.highestOneBit(capacity * 2 - 1) << 1;
+		table = new int[slots];
+		mask = slots - 1;
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.dream.box2d.water;
+
+/**
+ * Explicit integration of the waves: every column is a spring pulled towards its target height, followed by some
+ * passes where the columns pull on their neighbours. It's cheap and the waves look sharp, but the values are tuned
+ * for steps of 1/60 s: the duration of the step is ignored, and the spread needs several passes to stay stable.
+ */
+public class ExplicitWaveSolver implements WaveSolver {
+
+	public static final int DEFAULT_PASSES = 8;
+
+	private int passes;
+
+	/**
+	 * Main constructor. Uses {@link #DEFAULT_PASSES} spread passes.
+	 */
+	public ExplicitWaveSolver() {
+		this(DEFAULT_PASSES);
+	}
+
+	/**
+	 * Constructor that allows to specify the spread passes
+	 * @param passes Number of passes where the columns pull on their neighbours
+	 */
+	public ExplicitWaveSolver(int passes) {
+		this.passes = passes;
+	}
+
+	@Override
+	public void step(HeightField field, float dampening, float tension, float spread, float delta) {
+		field.step(dampening, tension, spread, passes);
+	}
+
+	public int getPasses() {
+		return passes;
+	}
+
+	public void setPasses(int passes) {
+		this.passes = passes;
+	}
+
+}
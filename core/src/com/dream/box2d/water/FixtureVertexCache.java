@@ -0,0 +1,111 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * World vertices and bounding boxes of the polygon fixtures that touch a {@link WaterVolume}, read from Box2D at
+ * most once per update. A fixture in contact with several pieces of the volume is transformed once, and the pieces
+ * whose box doesn't touch it are skipped without calling Box2D again. Call {@link #begin()} before every update.
+ * The entries of the removed fixtures are reused, like the ones of the {@link CirclePolygonCache}.
+ */
+class FixtureVertexCache {
+
+	private final ObjectMap<Fixture, Entry> entries = new ObjectMap<Fixture, Entry>();
+	private final Array<Entry> freeEntries = new Array<Entry>(false, 16);
+	private int frame;
+
+	/**
+	 * Starts a new update. Vertices read before are stale from now on.
+	 */
+	void begin() {
+		frame++;
+	}
+
+	/**
+	 * Gets the world vertices of a polygon fixture in the current update, reading them the first time
+	 * @param fixture Polygon fixture
+	 * @param state State of the body of the fixture
+	 * @param vertex Scratch vector
+	 * @return Vertices and box of the fixture. Owned by the cache, so it must not be kept after the update
+	 */
+	Entry get(Fixture fixture, BodyState state, Vector2 vertex) {
+		Entry entry = entries.get(fixture);
+		if (entry == null) {
+			entry = freeEntries.size > 0 ? freeEntries.pop() : new Entry();
+			entries.put(fixture, entry);
+		} else if (entry.frame == frame) {
+			return entry;
+		}
+
+		PolygonShape polygon = (PolygonShape) fixture.getShape();
+		int count = polygon.getVertexCount();
+		if (entry.vertices.length < count * 2)
+			entry.vertices = new float[count * 2];
+		float[] vertices = entry.vertices;
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			polygon.getVertex(i, vertex);
+			float x = state.worldX(vertex.x, vertex.y);
+			float y = state.worldY(vertex.x, vertex.y);
+			vertices[i * 2] = x;
+			vertices[i * 2 + 1] = y;
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+		entry.count = count;
+		entry.minX = minX;
+		entry.minY = minY;
+		entry.maxX = maxX;
+		entry.maxY = maxY;
+		entry.frame = frame;
+		return entry;
+	}
+
+	/**
+	 * Makes sure that there are entries for a number of fixtures, so {@link #get(Fixture, BodyState, Vector2)}
+	 * doesn't create them
+	 * @param fixtures Number of fixtures
+	 */
+	void reserve(int fixtures) {
+		while (entries.size + freeEntries.size < fixtures) {
+			freeEntries.add(new Entry());
+		}
+	}
+
+	/**
+	 * Removes the vertices of a fixture, for example when it stops touching the water
+	 * @param fixture Fixture
+	 */
+	void remove(Fixture fixture) {
+		Entry entry = entries.remove(fixture);
+		if (entry != null)
+			freeEntries.add(entry);
+	}
+
+	/**
+	 * Removes all the vertices
+	 */
+	void clear() {
+		for (Entry entry : entries.values()) {
+			freeEntries.add(entry);
+		}
+		entries.clear();
+	}
+
+	/**
+	 * World vertices of one fixture, interleaved x and y values, and their bounding box
+	 */
+	static class Entry {
+		float[] vertices = new float[16]; // Box2D polygons have up to 8 vertices
+		int count;
+		float minX, minY, maxX, maxY;
+		int frame; // update in which the vertices were read
+	}
+
+}
@@ -0,0 +1,722 @@
+package com.dream.box2d.water;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.badlogic.gdx.physics.box2d.Body;
+
+/**
+ * Height field used for the waves simulation. Stores the state of every column in parallel arrays so the wave
+ * step walks contiguous memory and does not allocate. Only the range of columns that are moving is simulated by
+ * {@link #step(float, float, float, int)}; the columns out of it are at rest, and the field sleeps when the range
+ * is empty. The steps can also be limited to a focus, usually the part of the field that is seen (see
+ * {@link #setFocus(int, int)}): the columns out of it are frozen and, when they come back into it, they are set to
+ * the state they would have reached oscillating on their own.
+ */
+public class HeightField {
+
+	final int size;
+	final float[] x; // position on the x-axis of each column
+	final float[] y; // position on the y-axis of the lower point of each column
+	final float[] targetHeights;
+	final float[] heights;
+	final float[] previousHeights; // heights before the last step, used to interpolate
+	final float[] speeds;
+	final Body[] bodies; // body in contact with each column
+	private float originX; // x of the first column
+	private float spacing; // distance between two columns
+
+	// scratch buffers reused by every spread pass
+	private final float[] lDeltas; // pull of the left neighbour on every column
+	private final float[] rDeltas; // pull of the right neighbour on every column
+
+	// tiled spread, used when the field has at least parallelThreshold columns
+	private ForkJoinPool pool;
+	private int parallelThreshold = Integer.MAX_VALUE;
+	private int tileSize = DEFAULT_TILE_SIZE;
+	private SpreadTile[] tiles;
+	private SpreadTiles spreadTiles;
+
+	// columns that are moving, the rest are exactly at their target height with no speed
+	private int activeStart;
+	private int activeEnd;
+	private float restThreshold = DEFAULT_REST_THRESHOLD;
+
+	// columns simulated by the steps, the ones out of the focus are frozen
+	private int focusStart;
+	private int focusEnd;
+	private final int[] frozenSteps; // step in which each column out of the focus was frozen
+	private int steps; // steps run
+	private float lastDampening; // values of the last step, used to relax the frozen columns
+	private float lastTension;
+	int stepFrom; // columns of the step being run
+	int stepTo;
+
+	// columns changed since the last copy (see copyChangesTo)
+	private int dirtyStart;
+	private int dirtyEnd;
+
+	public static final int DEFAULT_TILE_SIZE = 4096;
+	public static final float DEFAULT_REST_THRESHOLD = 0.0001f;
+
+	/**
+	 * Main constructor. All the columns start at zero, use {@link #set(int, float, float, float, float, float)} to
+	 * initialize them.
+	 * @param size Number of columns
+	 */
+	public HeightField(int size) {
+		this.size = size;
+		this.x = new float[size];
+		this.y = new float[size];
+		this.targetHeights = new float[size];
+		this.heights = new float[size];
+		this.previousHeights = new float[size];
+		this.speeds = new float[size];
+		this.bodies = new Body[size];
+		this.lDeltas = new float[size];
+		this.rDeltas = new float[size];
+		this.activeEnd = size;
+		this.focusEnd = size;
+		this.frozenSteps = new int[size];
+		this.dirtyEnd = size;
+	}
+
+	/**
+	 * Creates a copy of the columns of another height field, with the same grid and moving columns
+	 * @param source Height field to copy
+	 */
+	public HeightField(HeightField source) {
+		this(source.size);
+		System.arraycopy(source.x, 0, x, 0, size);
+		System.arraycopy(source.y, 0, y, 0, size);
+		System.arraycopy(source.targetHeights, 0, targetHeights, 0, size);
+		System.arraycopy(source.heights, 0, heights, 0, size);
+		System.arraycopy(source.previousHeights, 0, previousHeights, 0, size);
+		System.arraycopy(source.speeds, 0, speeds, 0, size);
+		System.arraycopy(source.bodies, 0, bodies, 0, size);
+		setGrid(source.originX, source.spacing);
+		activeStart = source.activeStart;
+		activeEnd = source.activeEnd;
+	}
+
+	/**
+	 * Sets the whole state of a column
+	 * @param i Index of the column
+	 * @param x Position on the x-axis of the lower point of the column
+	 * @param y Position on the y-axis of the lower point of the column
+	 * @param targetHeight Default height of the column
+	 * @param height Actual height of the column
+	 * @param speed Speed at which it is currently oscillating
+	 */
+	public void set(int i, float x, float y, float targetHeight, float height, float speed) {
+		this.x[i] = x;
+		this.y[i] = y;
+		this.targetHeights[i] = targetHeight;
+		this.heights[i] = height;
+		this.previousHeights[i] = height;
+		this.speeds[i] = speed;
+		wake(i);
+	}
+
+	/**
+	 * Keeps the actual heights so the state between this step and the next one can be interpolated
+	 */
+	public void storePreviousHeights() {
+		System.arraycopy(heights, 0, previousHeights, 0, size);
+	}
+
+	/**
+	 * Gets the height of a column between the previous step and the actual one
+	 * @param i Index of the column
+	 * @param alpha Fraction of the step, from 0 (previous) to 1 (actual)
+	 * @return Interpolated height
+	 */
+	public float getInterpolatedHeight(int i, float alpha) {
+		return previousHeights[i] + (heights[i] - previousHeights[i]) * alpha;
+	}
+
+	/**
+	 * Sets the uniform grid where the columns are placed, used to find columns by position
+	 * @param originX Position on the x-axis of the first column
+	 * @param spacing Distance between two consecutive columns
+	 */
+	public void setGrid(float originX, float spacing) {
+		this.originX = originX;
+		this.spacing = spacing;
+	}
+
+	/**
+	 * Sets the grid from the first and last columns, assuming that they are evenly spaced
+	 */
+	public void setGridFromColumns() {
+		setGrid(size > 0 ? x[0] : 0, size > 1 ? (x[size - 1] - x[0]) / (size - 1) : 1);
+	}
+
+	/**
+	 * Finds the first column whose x is greater or equal than the given one
+	 * @param minX Position on the x-axis
+	 * @return Index of the column, or size if there is none
+	 */
+	public int firstColumn(float minX) {
+		int i = (int) Math.ceil((minX - originX) / spacing);
+		i = Math.max(0, Math.min(size, i));
+		// fix the rounding of the division
+		while (i > 0 && x[i - 1] >= minX)
+			i--;
+		while (i < size && x[i] < minX)
+			i++;
+		return i;
+	}
+
+	/**
+	 * Finds the last column whose x is lower or equal than the given one
+	 * @param maxX Position on the x-axis
+	 * @return Index of the column, or -1 if there is none
+	 */
+	public int lastColumn(float maxX) {
+		int i = (int) Math.floor((maxX - originX) / spacing);
+		i = Math.max(-1, Math.min(size - 1, i));
+		// fix the rounding of the division
+		while (i < size - 1 && x[i + 1] <= maxX)
+			i++;
+		while (i >= 0 && x[i] > maxX)
+			i--;
+		return i;
+	}
+
+	/**
+	 * Updates the current height of one column with respect to its speed
+	 * @param i Index of the column
+	 * @param dampening Dampening value
+	 * @param tension Tension value
+	 */
+	public void update(int i, float dampening, float tension) {
+		float x = targetHeights[i] - heights[i];
+		speeds[i] += tension * x - speeds[i] * dampening;
+		heights[i] += speeds[i];
+	}
+
+	/**
+	 * Updates the current height of every column with respect to its speed
+	 * @param dampening Dampening value
+	 * @param tension Tension value
+	 */
+	public void update(float dampening, float tension) {
+		float[] targetHeights = this.targetHeights;
+		float[] heights = this.heights;
+		float[] speeds = this.speeds;
+		for (int i = 0; i < size; i++) {
+			float x = targetHeights[i] - heights[i];
+			speeds[i] += tension * x - speeds[i] * dampening;
+			heights[i] += speeds[i];
+		}
+	}
+
+	/**
+	 * Makes the columns pull on their neighbours. The first and last columns of every loop are peeled so the inner
+	 * loops have no branches, but the order of the additions is the same as visiting the columns one by one.
+	 * @param spread Spread value
+	 * @param passes Number of passes
+	 */
+	public void spread(float spread, int passes) {
+		int n = size;
+		if (n < 2)
+			return;
+
+		if (pool != null && n >= parallelThreshold) {
+			spreadParallel(spread, passes);
+			return;
+		}
+
+		float[] heights = this.heights;
+		float[] speeds = this.speeds;
+		float[] lDeltas = this.lDeltas;
+		float[] rDeltas = this.rDeltas;
+
+		for (int j = 0; j < passes; j++) {
+			// every column pulls on both neighbours
+			lDeltas[1] = spread * (heights[0] - heights[1]);
+			speeds[1] += lDeltas[1];
+			for (int i = 1; i < n - 1; i++) {
+				rDeltas[i - 1] = spread * (heights[i] - heights[i - 1]);
+				speeds[i - 1] += rDeltas[i - 1];
+				lDeltas[i + 1] = spread * (heights[i] - heights[i + 1]);
+				speeds[i + 1] += lDeltas[i + 1];
+			}
+			rDeltas[n - 2] = spread * (heights[n - 1] - heights[n - 2]);
+			speeds[n - 2] += rDeltas[n - 2];
+
+			heights[1] += lDeltas[1];
+			for (int i = 1; i < n - 1; i++) {
+				heights[i - 1] += rDeltas[i - 1];
+				heights[i + 1] += lDeltas[i + 1];
+			}
+			heights[n - 2] += rDeltas[n - 2];
+		}
+	}
+
+	/**
+	 * Runs one step of the waves, only for the active columns. The range grows by one column per spread pass,
+	 * which is as far as a wave can travel in a step, and then the columns at its ends that have settled are set
+	 * to rest and left out. Columns out of the range are not visited at all, so a calm field costs nothing. It
+	 * also keeps the previous heights of the columns that can change. Only the columns in the focus are stepped.
+	 * This is the step of the {@link ExplicitWaveSolver}.
+	 * @param dampening Dampening value
+	 * @param tension Tension value
+	 * @param spread Spread value
+	 * @param passes Number of spread passes
+	 */
+	public void step(float dampening, float tension, float spread, int passes) {
+		if (!beginStep(passes, dampening, tension))
+			return;
+		int from = stepFrom;
+		int to = stepTo;
+
+		float[] targetHeights = this.targetHeights;
+		float[] heights = this.heights;
+		float[] speeds = this.speeds;
+		for (int i = from; i < to; i++) {
+			float x = targetHeights[i] - heights[i];
+			speeds[i] += tension * x - speeds[i] * dampening;
+			heights[i] += speeds[i];
+		}
+
+		// tiles spread whole tiles, which would move the frozen columns next to the focus
+		if (from == 0 && to == size)
+			spread(spread, passes);
+		else if (pool != null && to - from >= parallelThreshold && focusStart == 0 && focusEnd == size)
+			spreadParallel(spread, passes, from, to);
+		else
+			spread(spread, passes, from, to);
+
+		endStep();
+	}
+
+	/**
+	 * Starts a step of a {@link WaveSolver}: finds the columns that can move in it, the active ones plus the ones
+	 * that a wave can reach at both sides, inside the focus, and keeps their heights as the previous ones. The
+	 * range is left in {@link #stepFrom} and {@link #stepTo}.
+	 * @param reach Max number of columns that a wave travels in the step
+	 * @param dampening Dampening value of the step
+	 * @param tension Tension value of the step
+	 * @return False if no column can move, so the step must not be run
+	 */
+	boolean beginStep(int reach, float dampening, float tension) {
+		steps++;
+		lastDampening = dampening;
+		lastTension = tension;
+		if (activeStart >= activeEnd)
+			return false;
+
+		int from = Math.max(focusStart, activeStart - reach);
+		int to = Math.min(focusEnd, activeEnd + reach);
+		if (from >= to) {
+			// only frozen columns are moving, they are relaxed when they come back into the focus
+			activeStart = activeEnd = 0;
+			return false;
+		}
+		System.arraycopy(heights, from, previousHeights, from, to - from);
+		stepFrom = from;
+		stepTo = to;
+		markDirty(from, to);
+		return true;
+	}
+
+	/**
+	 * Ends a step started with {@link #beginStep(int, float, float)}, leaving out the settled columns at both ends
+	 * of its range
+	 */
+	void endStep() {
+		int from = stepFrom;
+		int to = stepTo;
+		while (from < to && settle(from))
+			from++;
+		while (to > from && settle(to - 1))
+			to--;
+		activeStart = from;
+		activeEnd = to;
+	}
+
+	/**
+	 * Sets a column to rest if it is close enough to it. Columns whose neighbours have a different target height
+	 * never settle, because the spread would keep moving them.
+	 * @param i Index of the column
+	 * @return True if the column is at rest
+	 */
+	private boolean settle(int i) {
+		float target = targetHeights[i];
+		if (Math.abs(speeds[i]) >= restThreshold || Math.abs(heights[i] - target) >= restThreshold)
+			return false;
+		if (i > 0 && targetHeights[i - 1] != target || i < size - 1 && targetHeights[i + 1] != target)
+			return false;
+
+		heights[i] = target;
+		previousHeights[i] = target;
+		speeds[i] = 0;
+		return true;
+	}
+
+	/**
+	 * Same as {@link #spread(float, int)} for a range of columns. The columns next to the range are read but not
+	 * changed, which is exact while they are at rest.
+	 * @param spread Spread value
+	 * @param passes Number of passes
+	 * @param from First column
+	 * @param to Column after the last one
+	 */
+	private void spread(float spread, int passes, int from, int to) {
+		int n = size;
+		float[] heights = this.heights;
+		float[] speeds = this.speeds;
+		float[] lDeltas = this.lDeltas;
+		float[] rDeltas = this.rDeltas;
+
+		for (int j = 0; j < passes; j++) {
+			for (int i = from; i < to; i++) {
+				float height = heights[i];
+				lDeltas[i] = i > 0 ? spread * (heights[i - 1] - height) : 0;
+				rDeltas[i] = i < n - 1 ? spread * (heights[i + 1] - height) : 0;
+				speeds[i] += lDeltas[i];
+				speeds[i] += rDeltas[i];
+			}
+			for (int i = from; i < to; i++) {
+				heights[i] += lDeltas[i];
+				heights[i] += rDeltas[i];
+			}
+		}
+	}
+
+	/**
+	 * Marks a column as moving, so the next steps simulate it
+	 * @param i Index of the column
+	 */
+	public void wake(int i) {
+		wake(i, i + 1);
+	}
+
+	/**
+	 * Marks a range of columns as moving, so the next steps simulate them
+	 * @param from First column
+	 * @param to Column after the last one
+	 */
+	public void wake(int from, int to) {
+		// a frozen column starts relaxing from the state it is given now
+		for (int i = Math.max(from, 0); i < Math.min(to, focusStart); i++) {
+			frozenSteps[i] = steps;
+		}
+		for (int i = Math.max(from, focusEnd); i < Math.min(to, size); i++) {
+			frozenSteps[i] = steps;
+		}
+		markDirty(from, to);
+
+		if (activeStart >= activeEnd) {
+			activeStart = from;
+			activeEnd = to;
+		} else {
+			activeStart = Math.min(activeStart, from);
+			activeEnd = Math.max(activeEnd, to);
+		}
+	}
+
+	/**
+	 * Limits the steps to a range of columns. The columns that leave the focus are frozen, and the ones that come
+	 * back into it are set to the state they would have reached if they had oscillated on their own, without
+	 * pulling on their neighbours, during the steps they were out. It's cheap to call every frame, since only the
+	 * columns that enter or leave the focus are visited.
+	 * @param from First column of the focus
+	 * @param to Column after the last one
+	 */
+	public void setFocus(int from, int to) {
+		from = Math.max(0, Math.min(size, from));
+		to = Math.max(from, Math.min(size, to));
+
+		// freeze the columns that leave the focus
+		for (int i = focusStart; i < Math.min(focusEnd, from); i++) {
+			freeze(i);
+		}
+		for (int i = Math.max(focusStart, to); i < focusEnd; i++) {
+			freeze(i);
+		}
+
+		// relax the columns that come back
+		for (int i = from; i < Math.min(to, focusStart); i++) {
+			relax(i);
+		}
+		for (int i = Math.max(from, focusEnd); i < to; i++) {
+			relax(i);
+		}
+		focusStart = from;
+		focusEnd = to;
+	}
+
+	private void freeze(int i) {
+		frozenSteps[i] = steps;
+		previousHeights[i] = heights[i];
+		markDirty(i, i + 1);
+	}
+
+	/**
+	 * Sets a frozen column to its state after the steps run since it was frozen. A lone column is a damped
+	 * oscillator: every explicit step turns its distance to the target x and its speed s into x' = (1 - t) x +
+	 * (1 - d) s and s' = -t x + (1 - d) s, so the state after n steps is the n-th power of that matrix, found by
+	 * squaring. It's an estimate for other solvers.
+	 * @param i Index of the column
+	 */
+	private void relax(int i) {
+		int n = steps - frozenSteps[i];
+		double x = heights[i] - targetHeights[i];
+		double s = speeds[i];
+		if (n > 0 && (x != 0 || s != 0)) {
+			double a = 1 - lastTension, b = 1 - lastDampening, c = -lastTension, d = 1 - lastDampening;
+			double ra = 1, rb = 0, rc = 0, rd = 1; // result, starts as the identity
+			while (n > 0) {
+				if ((n & 1) != 0) {
+					double na = ra * a + rb * c, nb = ra * b + rb * d;
+					double nc = rc * a + rd * c, nd = rc * b + rd * d;
+					ra = na;
+					rb = nb;
+					rc = nc;
+					rd = nd;
+				}
+				double na = a * a + b * c, nb = a * b + b * d;
+				double nc = c * a + d * c, nd = c * b + d * d;
+				a = na;
+				b = nb;
+				c = nc;
+				d = nd;
+				n >>= 1;
+			}
+			heights[i] = (float) (targetHeights[i] + ra * x + rb * s);
+			speeds[i] = (float) (rc * x + rd * s);
+		}
+		previousHeights[i] = heights[i];
+		frozenSteps[i] = steps;
+		markDirty(i, i + 1);
+		if (!settle(i))
+			wake(i);
+	}
+
+	/**
+	 * Marks a range of columns to be copied by the next {@link #copyChangesTo(HeightField)}, without waking them
+	 * @param from First column
+	 * @param to Column after the last one
+	 */
+	void markDirty(int from, int to) {
+		dirtyStart = Math.min(dirtyStart, from);
+		dirtyEnd = Math.max(dirtyEnd, to);
+	}
+
+	/**
+	 * Copies the heights and speeds of the columns that changed since the last copy, and the range of moving
+	 * columns, to a field with the same columns. Used to publish the state simulated by a worker thread.
+	 * @param target Height field created as a copy of this one
+	 */
+	void copyChangesTo(HeightField target) {
+		if (dirtyStart < dirtyEnd) {
+			int count = dirtyEnd - dirtyStart;
+			System.arraycopy(heights, dirtyStart, target.heights, dirtyStart, count);
+			System.arraycopy(previousHeights, dirtyStart, target.previousHeights, dirtyStart, count);
+			System.arraycopy(speeds, dirtyStart, target.speeds, dirtyStart, count);
+		}
+		target.activeStart = activeStart;
+		target.activeEnd = activeEnd;
+		dirtyStart = size;
+		dirtyEnd = 0;
+	}
+
+	/**
+	 * @return First column of the focus
+	 */
+	public int getFocusStart() {
+		return focusStart;
+	}
+
+	/**
+	 * @return Column after the last one of the focus
+	 */
+	public int getFocusEnd() {
+		return focusEnd;
+	}
+
+	/**
+	 * @return True if every column of the focus is at rest, so the steps do nothing
+	 */
+	public boolean isSleeping() {
+		return activeStart >= activeEnd;
+	}
+
+	/**
+	 * @return First moving column
+	 */
+	public int getActiveStart() {
+		return activeStart;
+	}
+
+	/**
+	 * @return Column after the last moving one
+	 */
+	public int getActiveEnd() {
+		return activeEnd;
+	}
+
+	public float getRestThreshold() {
+		return restThreshold;
+	}
+
+	/**
+	 * Sets how close to rest a column must be to stop simulating it
+	 * @param restThreshold Max speed and distance to the target height of a column at rest
+	 */
+	public void setRestThreshold(float restThreshold) {
+		this.restThreshold = restThreshold;
+	}
+
+	/**
+	 * Runs the spread passes splitting the columns in tiles that are propagated in parallel. Tiles write their
+	 * heights to a scratch buffer, since the other tiles may still be reading their halo, and the result is
+	 * copied back at the end. Speeds are updated in place because every tile only writes its own columns.
+	 * The result is bit-identical to the sequential spread (the tolerance is 0).
+	 * @param spread Spread value
+	 * @param passes Number of passes
+	 */
+	private void spreadParallel(float spread, int passes) {
+		spreadParallel(spread, passes, 0, size);
+	}
+
+	/**
+	 * Runs the spread passes of the tiles that overlap a range of columns
+	 * @param spread Spread value
+	 * @param passes Number of passes
+	 * @param from First column
+	 * @param to Column after the last one
+	 */
+	private void spreadParallel(float spread, int passes, int from, int to) {
+		if (tiles == null) {
+			tiles = new SpreadTile[(size + tileSize - 1) / tileSize];
+			for (int t = 0; t < tiles.length; t++) {
+				tiles[t] = new SpreadTile(this, t * tileSize, Math.min(size, (t + 1) * tileSize));
+			}
+			spreadTiles = new SpreadTiles(tiles);
+		}
+
+		int firstTile = from / tileSize;
+		int lastTile = (to - 1) / tileSize;
+		float[] output = lDeltas; // not used by the tiles, so it can hold the new heights
+		for (int t = firstTile; t <= lastTile; t++) {
+			tiles[t].set(spread, passes, output);
+		}
+		spreadTiles.setRange(firstTile, lastTile + 1);
+		spreadTiles.reinitialize();
+		pool.invoke(spreadTiles);
+		int start = firstTile * tileSize;
+		int end = Math.min(size, (lastTile + 1) * tileSize);
+		System.arraycopy(output, start, heights, start, end - start);
+		markDirty(start, end);
+	}
+
+	/**
+	 * Propagates the waves of big fields on several threads. The columns are split in tiles that are spread in
+	 * parallel, giving the same result as the sequential spread.
+	 * @param pool Pool where the tiles run, or null to always spread in the calling thread
+	 * @param threshold Min number of columns to use the pool
+	 * @param tileSize Number of columns of every tile
+	 */
+	public void setParallelism(ForkJoinPool pool, int threshold, int tileSize) {
+		this.pool = pool;
+		this.parallelThreshold = threshold;
+		if (this.tileSize != tileSize) {
+			this.tileSize = tileSize;
+			this.tiles = null;
+		}
+	}
+
+	/**
+	 * Invokes a range of tiles and waits for them
+	 */
+	private static class SpreadTiles extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SpreadTile[] tiles;
+		private int from;
+		private int to;
+
+		SpreadTiles(SpreadTile[] tiles) {
+			this.tiles = tiles;
+			this.to = tiles.length;
+		}
+
+		void setRange(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			for (int t = from + 1; t < to; t++) {
+				tiles[t].fork();
+			}
+			tiles[from].invoke();
+			for (int t = from + 1; t < to; t++) {
+				tiles[t].join();
+			}
+		}
+
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public float getX(int i) {
+		return x[i];
+	}
+
+	public void setX(int i, float x) {
+		this.x[i] = x;
+	}
+
+	public float getY(int i) {
+		return y[i];
+	}
+
+	public void setY(int i, float y) {
+		this.y[i] = y;
+	}
+
+	public float getTargetHeight(int i) {
+		return targetHeights[i];
+	}
+
+	public void setTargetHeight(int i, float targetHeight) {
+		this.targetHeights[i] = targetHeight;
+		wake(i);
+	}
+
+	public float getHeight(int i) {
+		return heights[i];
+	}
+
+	public void setHeight(int i, float height) {
+		this.heights[i] = height;
+		wake(i);
+	}
+
+	public float getSpeed(int i) {
+		return speeds[i];
+	}
+
+	public void setSpeed(int i, float speed) {
+		this.speeds[i] = speed;
+		wake(i);
+	}
+
+	public Body getActualBody(int i) {
+		return bodies[i];
+	}
+
+	public void setActualBody(int i, Body body) {
+		this.bodies[i] = body;
+	}
+
+}
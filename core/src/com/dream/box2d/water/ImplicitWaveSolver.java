@@ -0,0 +1,84 @@
+package com.dream.box2d.water;
+
+/**
+ * Implicit integration of the waves, stable with any step. The new heights h' of the columns solve
+ * h' - h = dt v + dt^2 (t (T - h') + k (h'(i-1) + h'(i+1) - 2 h')) - dt d (h' - h), where dt is the duration of
+ * the step in steps of 1/60 s, so the same values give the same waves as with the explicit solver, and k is the
+ * spread times {@link ExplicitWaveSolver#DEFAULT_PASSES}. That is a tridiagonal system in the changes h' - h,
+ * solved with the Thomas algorithm in one pass over the moving columns, and the speeds are (h' - h) / dt. Use it
+ * to run the waves at low rates, for example 20 or 30 steps per second on low-end hardware. The integration damps
+ * the short waves, so the surface is smoother than with the explicit solver and settles sooner with long steps.
+ */
+public class ImplicitWaveSolver implements WaveSolver {
+
+	/** Duration of the step the wave values are tuned for */
+	public static final float REFERENCE_STEP = 1 / 60f;
+
+	// coefficients of the forward sweep
+	private float[] upper = new float[0];
+	private float[] right = new float[0];
+
+	@Override
+	public void step(HeightField field, float dampening, float tension, float spread, float delta) {
+		float tau = delta / REFERENCE_STEP;
+		float k = tau * tau * spread * ExplicitWaveSolver.DEFAULT_PASSES; // coupling with every neighbour
+		float spring = tau * tau * tension;
+		float damping = tau * dampening;
+
+		// a wave travels about sqrt(k) columns per step, the range grows with a wide margin
+		int reach = Math.max(1, (int) Math.ceil(ExplicitWaveSolver.DEFAULT_PASSES * tau));
+		if (!field.beginStep(reach, dampening, tension))
+			return;
+		int from = field.stepFrom;
+		int to = field.stepTo;
+		int n = field.size;
+
+		if (upper.length < n) {
+			upper = new float[n];
+			right = new float[n];
+		}
+		float[] upper = this.upper;
+		float[] right = this.right;
+		float[] targetHeights = field.targetHeights;
+		float[] heights = field.heights;
+		float[] previousHeights = field.previousHeights; // heights before the step, copied by beginStep
+		float[] speeds = field.speeds;
+
+		// forward sweep over the changes of the heights, so the rounding of the coefficients scales the change and
+		// not the whole height, which would move the volume. Columns next to the range are not moving
+		float lower = 0; // coefficient of the previous column
+		for (int i = from; i < to; i++) {
+			float h = previousHeights[i];
+			float diagonal = 1 + damping + spring;
+			float rhs = tau * speeds[i] + spring * (targetHeights[i] - h);
+			if (i > 0) {
+				diagonal += k;
+				rhs += k * (heights[i - 1] - h);
+			}
+			float up = 0;
+			if (i < n - 1) {
+				diagonal += k;
+				rhs += k * (heights[i + 1] - h);
+				if (i < to - 1)
+					up = -k;
+			}
+
+			float m = diagonal - lower * (i > from ? upper[i - 1] : 0);
+			upper[i] = up / m;
+			right[i] = (rhs - lower * (i > from ? right[i - 1] : 0)) / m;
+			lower = -k;
+		}
+
+		// back substitution
+		float next = 0;
+		for (int i = to - 1; i >= from; i--) {
+			float change = right[i] - (i < to - 1 ? upper[i] * next : 0);
+			speeds[i] = change / tau;
+			heights[i] = previousHeights[i] + change;
+			next = change;
+		}
+
+		field.endStep();
+	}
+
+}
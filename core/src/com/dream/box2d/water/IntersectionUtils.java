@@ -1,11 +1,12 @@
 package com.dream.box2d.water;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Polygon;
+import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.CircleShape;
 import com.badlogic.gdx.physics.box2d.Fixture;
 import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.physics.box2d.Shape;
@@ -24,14 +25,29 @@ public class IntersectionUtils {
 	 * @return The point where the two lines intersect or null if the don't cross
 	 */
 	public static Vector2 intersection(Vector2 cp1, Vector2 cp2, Vector2 s, Vector2 e) {
-		Vector2 dc = new Vector2(cp1.x - cp2.x, cp1.y - cp2.y);
-		Vector2 dp = new Vector2(s.x - e.x, s.y - e.y);
+		return intersection(cp1, cp2, s, e, new Vector2());
+	}
+
+	/**
+	 * Gets the point where two lines intersect without allocating
+	 * @param cp1 Polygon side point 1
+	 * @param cp2 Polygon side point 2
+	 * @param s Line start point
+	 * @param e Line end point
+	 * @param out It will be set with the intersection point
+	 * @return The out vector or null if the lines don't cross
+	 */
+	public static Vector2 intersection(Vector2 cp1, Vector2 cp2, Vector2 s, Vector2 e, Vector2 out) {
+		float dcx = cp1.x - cp2.x;
+		float dcy = cp1.y - cp2.y;
+		float dpx = s.x - e.x;
+		float dpy = s.y - e.y;
 		float n1 = cp1.x * cp2.y - cp1.y * cp2.x;
 		float n2 = s.x * e.y - s.y * e.x;
-		float n3 = (dc.x * dp.y - dc.y * dp.x);
+		float n3 = (dcx * dpy - dcy * dpx);
 		if(n3 != 0){
 			n3 = 1.0f / n3;
-			return new Vector2((n1 * dp.x - n2 * dc.x) * n3, (n1 * dp.y - n2 * dc.y) * n3);
+			return out.set((n1 * dpx - n2 * dcx) * n3, (n1 * dpy - n2 * dcy) * n3);
 		}
 		
 		return null;
@@ -57,66 +73,396 @@ public class IntersectionUtils {
 	 * @return True if the two fixtures intersect
 	 */
 	public static boolean findIntersectionOfFixtures(Fixture fA, Fixture fB, List<Vector2> outputVertices) {
+		ClippedPolygon result = new ClippedPolygon();
+		outputVertices.clear();
+		if (!findIntersectionOfFixtures(fA, fB, result))
+			return false;
+
+		for (int i = 0; i < result.getCount(); i++) {
+			outputVertices.add(new Vector2(result.getX(i), result.getY(i)));
+		}
+		return !outputVertices.isEmpty();
+	}
+
+	/**
+	 * Finds the intersection of two fixtures without allocating. Circles are replaced by polygons of
+	 * {@link CirclePolygonCache#DEFAULT_SEGMENTS} sides, created every time.
+	 * @param fA Fixture A (water)
+	 * @param fB Fixture B (dynamic body)
+	 * @param result It will be set with the vertices, area and centroid of the intersection polygon
+	 * @return True if the two fixtures intersect
+	 */
+	public static boolean findIntersectionOfFixtures(Fixture fA, Fixture fB, ClippedPolygon result) {
+		return findIntersectionOfFixtures(fA, fB, result, null);
+	}
+
+	/**
+	 * Finds the intersection of two fixtures without allocating. The transforms of the bodies are read from
+	 * Box2D.
+	 * @param fA Fixture A (water)
+	 * @param fB Fixture B (dynamic body)
+	 * @param result It will be set with the vertices, area and centroid of the intersection polygon
+	 * @param circles Polygons used for the circle fixtures, or null to create them every time
+	 * @return True if the two fixtures intersect
+	 */
+	public static boolean findIntersectionOfFixtures(Fixture fA, Fixture fB, ClippedPolygon result,
+			CirclePolygonCache circles) {
+		result.subjectState.setTransform(fA.getBody());
+		result.clipState.setTransform(fB.getBody());
+		return findIntersectionOfFixtures(fA, result.subjectState, fB, result.clipState, result, circles);
+	}
+
+	/**
+	 * Finds the intersection of two fixtures without allocating. Water is the polygon to clip, so it must be
+	 * convex and the body polygon is used as clipping polygon. Circles are clipped as the polygons of the cache,
+	 * but the area and centroid of a circle are exact when only one side of the water cuts it. The vertices are
+	 * moved to world coordinates with the given states, without asking Box2D for every one.
+	 * @param fA Fixture A (water)
+	 * @param stateA State of the body of fixture A
+	 * @param fB Fixture B (dynamic body)
+	 * @param stateB State of the body of fixture B
+	 * @param result It will be set with the vertices, area and centroid of the intersection polygon
+	 * @param circles Polygons used for the circle fixtures, or null to create them every time
+	 * @return True if the two fixtures intersect
+	 */
+	public static boolean findIntersectionOfFixtures(Fixture fA, BodyState stateA, Fixture fB, BodyState stateB,
+			ClippedPolygon result, CirclePolygonCache circles) {
 		// currently this only handles polygon or circles
-		if (fA.getShape().getType() != Shape.Type.Polygon && fA.getShape().getType() != Shape.Type.Circle || 
-				fB.getShape().getType() != Shape.Type.Polygon && fB.getShape().getType() != Shape.Type.Circle)
+		Shape.Type typeA = fA.getShape().getType();
+		Shape.Type typeB = fB.getShape().getType();
+		if (typeA != Shape.Type.Polygon && typeA != Shape.Type.Circle || 
+				typeB != Shape.Type.Polygon && typeB != Shape.Type.Circle)
 			return false;
-		
-		PolygonShape polyA = new PolygonShape();
-		PolygonShape polyB = new PolygonShape();
-		
-		// if there is a circle, convert to octagon
-		if(fA.getShape().getType() == Shape.Type.Circle) 
-			polyA = circleToSquare(fA);
-		else
-			polyA = (PolygonShape) fA.getShape();
-		
-		if(fB.getShape().getType() == Shape.Type.Circle)
-			polyB = circleToSquare(fB);
-		else
-			polyB = (PolygonShape) fB.getShape();
 
-		// fill subject polygon from fixtureA polygon
-		for (int i = 0; i < polyA.getVertexCount(); i++) {
-			Vector2 vertex = new Vector2();
-			polyA.getVertex(i, vertex);
-			vertex = fA.getBody().getWorldPoint(vertex);
-			outputVertices.add(new Vector2(vertex));
+		int segments = circles != null ? circles.getSegments() : CirclePolygonCache.DEFAULT_SEGMENTS;
+		int countA = typeA == Shape.Type.Circle ? segments : ((PolygonShape) fA.getShape()).getVertexCount();
+		int countB = typeB == Shape.Type.Circle ? segments : ((PolygonShape) fB.getShape()).getVertexCount();
+		result.ensureCapacity(countA, countB);
+
+		worldVertices(fA, stateA, circles, countA, result.subject, result);
+		worldVertices(fB, stateB, circles, countB, result.clip, result);
+
+		if (typeA == Shape.Type.Polygon && typeB == Shape.Type.Circle)
+			return intersectCircle(result.subject, countA, fB, stateB, countB, result);
+		if (!overlaps(result.subject, countA, result.clip, countB)) {
+			// the bounding boxes of the fixtures touch, but not the fixtures
+			result.count = 0;
+			result.area = 0;
+			return false;
+		}
+
+		return clip(result.subject, countA, result.clip, countB, result) > 0;
+	}
+
+	/**
+	 * Finds the intersection of a convex polygon of water, already in world coordinates, and a fixture. The
+	 * fixture is only clipped if its bounding box overlaps the one of the polygon.
+	 * @param polygon Counter-clockwise world vertices of the water, interleaved x and y values. Must not be one of
+	 *        the buffers of the result
+	 * @param count Number of vertices of the water
+	 * @param minX Min x of the water
+	 * @param minY Min y of the water
+	 * @param maxX Max x of the water
+	 * @param maxY Max y of the water
+	 * @param fB Fixture B (dynamic body)
+	 * @param stateB State of the body of fixture B
+	 * @param result It will be set with the vertices, area and centroid of the intersection polygon
+	 * @param circles Polygons used for the circle fixtures, or null to create them every time
+	 * @return True if the water and the fixture intersect
+	 */
+	public static boolean findIntersectionOfPolygon(float[] polygon, int count, float minX, float minY, float maxX,
+			float maxY, Fixture fB, BodyState stateB, ClippedPolygon result, CirclePolygonCache circles) {
+		result.count = 0;
+		result.area = 0;
+		Shape.Type typeB = fB.getShape().getType();
+		if (typeB != Shape.Type.Polygon && typeB != Shape.Type.Circle)
+			return false;
+
+		if (typeB == Shape.Type.Circle) {
+			// the box of a circle doesn't need its vertices
+			CircleShape circle = (CircleShape) fB.getShape();
+			Vector2 position = circle.getPosition();
+			float cx = stateB.worldX(position.x, position.y);
+			float cy = stateB.worldY(position.x, position.y);
+			float radius = circle.getRadius();
+			if (cx + radius < minX || cx - radius > maxX || cy + radius < minY || cy - radius > maxY)
+				return false;
+
+			int countB = circles != null ? circles.getSegments() : CirclePolygonCache.DEFAULT_SEGMENTS;
+			result.ensureCapacity(count, countB);
+			worldVertices(fB, stateB, circles, countB, result.clip, result);
+			return intersectCircle(polygon, count, fB, stateB, countB, result);
 		}
 
-		// fill clip polygon from fixtureB polygon
-		List<Vector2> clipPolygon = new ArrayList<Vector2>();
-		for (int i = 0; i < polyB.getVertexCount(); i++) {
-			Vector2 vertex = new Vector2();
-			polyB.getVertex(i, vertex);
-			vertex = fB.getBody().getWorldPoint(vertex);
-			clipPolygon.add(new Vector2(vertex));
+		int countB = ((PolygonShape) fB.getShape()).getVertexCount();
+		result.ensureCapacity(count, countB);
+		worldVertices(fB, stateB, circles, countB, result.clip, result);
+		float[] clip = result.clip;
+		float minBX = Float.MAX_VALUE, minBY = Float.MAX_VALUE, maxBX = -Float.MAX_VALUE, maxBY = -Float.MAX_VALUE;
+		for (int i = 0; i < countB * 2; i += 2) {
+			minBX = Math.min(minBX, clip[i]);
+			maxBX = Math.max(maxBX, clip[i]);
+			minBY = Math.min(minBY, clip[i + 1]);
+			maxBY = Math.max(maxBY, clip[i + 1]);
 		}
+		if (minBX > maxX || minX > maxBX || minBY > maxY || minY > maxBY)
+			return false;
 
-		Vector2 cp1 = clipPolygon.get(clipPolygon.size() - 1);
-		for (int j = 0; j < clipPolygon.size(); j++) {
-			Vector2 cp2 = clipPolygon.get(j);
-			if (outputVertices.isEmpty())
+		return clip(polygon, count, clip, countB, result) > 0;
+	}
+
+	/**
+	 * Intersection of a polygon of water and a circle whose vertices are already in the clip buffer of the result.
+	 * The area and centroid are exact when only one side of the water cuts the circle.
+	 */
+	private static boolean intersectCircle(float[] polygon, int count, Fixture fB, BodyState stateB, int countB,
+			ClippedPolygon result) {
+		CircleShape circle = (CircleShape) fB.getShape();
+		Vector2 position = circle.getPosition();
+		float cx = stateB.worldX(position.x, position.y);
+		float cy = stateB.worldY(position.x, position.y);
+		if (circleSegment(polygon, count, cx, cy, circle.getRadius(), result)) {
+			if (result.area <= 0) {
+				result.count = 0;
 				return false;
-			List<Vector2> inputList = new ArrayList<Vector2>(outputVertices);
-			outputVertices.clear();
-			Vector2 s = inputList.get(inputList.size() - 1); // last on the input list
-			for (int i = 0; i < inputList.size(); i++) {
-				Vector2 e = inputList.get(i);
-				if (inside(cp1, cp2, e)) {
-					if (!inside(cp1, cp2, s)) {
-						outputVertices.add(intersection(cp1, cp2, s, e));
-					}
-					outputVertices.add(e);
-				} else if (inside(cp1, cp2, s)) {
-					outputVertices.add(intersection(cp1, cp2, s, e));
+			}
+
+			// the polygon is still clipped for the drag and the splashes, but the exact area is kept
+			float area = result.area;
+			float centroidX = result.centroid.x;
+			float centroidY = result.centroid.y;
+			clip(polygon, count, result.clip, countB, result);
+			result.area = area;
+			result.centroid.set(centroidX, centroidY);
+			return true;
+		}
+		return clip(polygon, count, result.clip, countB, result) > 0;
+	}
+
+	/**
+	 * Checks if the bounding boxes of two polygons overlap
+	 * @param a Vertices of the first polygon, interleaved x and y values
+	 * @param countA Number of vertices of the first polygon
+	 * @param b Vertices of the second polygon, interleaved x and y values
+	 * @param countB Number of vertices of the second polygon
+	 * @return True if the bounding boxes overlap
+	 */
+	public static boolean overlaps(float[] a, int countA, float[] b, int countB) {
+		float minAX = Float.MAX_VALUE, minAY = Float.MAX_VALUE, maxAX = -Float.MAX_VALUE, maxAY = -Float.MAX_VALUE;
+		for (int i = 0; i < countA * 2; i += 2) {
+			minAX = Math.min(minAX, a[i]);
+			maxAX = Math.max(maxAX, a[i]);
+			minAY = Math.min(minAY, a[i + 1]);
+			maxAY = Math.max(maxAY, a[i + 1]);
+		}
+		float minBX = Float.MAX_VALUE, minBY = Float.MAX_VALUE, maxBX = -Float.MAX_VALUE, maxBY = -Float.MAX_VALUE;
+		for (int i = 0; i < countB * 2; i += 2) {
+			minBX = Math.min(minBX, b[i]);
+			maxBX = Math.max(maxBX, b[i]);
+			minBY = Math.min(minBY, b[i + 1]);
+			maxBY = Math.max(maxBY, b[i + 1]);
+		}
+		return minAX <= maxBX && minBX <= maxAX && minAY <= maxBY && minBY <= maxAY;
+	}
+
+	/**
+	 * Fills the world vertices of a fixture. Circles use the cached polygon.
+	 * @param fixture Polygon or circle fixture
+	 * @param state State of the body of the fixture
+	 * @param circles Polygons used for the circle fixtures, or null to create them
+	 * @param count Number of vertices
+	 * @param out It will be set with the vertices, interleaved x and y values
+	 * @param result Clipping buffers, used as scratch
+	 */
+	private static void worldVertices(Fixture fixture, BodyState state, CirclePolygonCache circles, int count,
+			float[] out, ClippedPolygon result) {
+		if (fixture.getShape().getType() == Shape.Type.Polygon) {
+			PolygonShape polygon = (PolygonShape) fixture.getShape();
+			Vector2 vertex = result.tmp;
+			for (int i = 0; i < count; i++) {
+				polygon.getVertex(i, vertex);
+				out[i * 2] = state.worldX(vertex.x, vertex.y);
+				out[i * 2 + 1] = state.worldY(vertex.x, vertex.y);
+			}
+			return;
+		}
+
+		float[] local;
+		if (circles != null) {
+			local = circles.get(fixture);
+		} else {
+			CircleShape circle = (CircleShape) fixture.getShape();
+			Vector2 position = circle.getPosition();
+			CirclePolygonCache.fill(circle.getRadius(), position.x, position.y, count, out);
+			local = out;
+		}
+
+		for (int i = 0; i < count; i++) {
+			float x = local[i * 2];
+			float y = local[i * 2 + 1];
+			out[i * 2] = state.worldX(x, y);
+			out[i * 2 + 1] = state.worldY(x, y);
+		}
+	}
+
+	/**
+	 * Exact area and centroid of the part of a circle inside a convex polygon, when at most one side of the
+	 * polygon cuts the circle (a circle floating far from the corners of the water). The submerged part is then a
+	 * circular segment: its area is r^2 * acos(-d / r) + d * sqrt(r^2 - d^2) and its centroid is at
+	 * 2 * (r^2 - d^2)^(3/2) / (3 * area) from the center, where d is the distance from the center to the side.
+	 * @param polygon Counter-clockwise vertices of the polygon, interleaved x and y values
+	 * @param count Number of vertices of the polygon
+	 * @param cx Position of the x coordinate of the circle center
+	 * @param cy Position of the y coordinate of the circle center
+	 * @param radius Circle radius
+	 * @param result It will be set with the area and centroid, only if the method returns true
+	 * @return False if two or more sides cut the circle, so it can't be solved as a circular segment
+	 */
+	public static boolean circleSegment(float[] polygon, int count, float cx, float cy, float radius,
+			ClippedPolygon result) {
+		float distance = radius;
+		float normalX = 0, normalY = 0; // inward normal of the side that cuts the circle
+		boolean cut = false;
+
+		float x1 = polygon[(count - 1) * 2];
+		float y1 = polygon[(count - 1) * 2 + 1];
+		for (int i = 0; i < count; i++) {
+			float x2 = polygon[i * 2];
+			float y2 = polygon[i * 2 + 1];
+			float edgeX = x2 - x1;
+			float edgeY = y2 - y1;
+			float length = (float) Math.sqrt(edgeX * edgeX + edgeY * edgeY);
+			if (length > 0) {
+				// signed distance from the side to the center, positive inside
+				float d = (edgeX * (cy - y1) - edgeY * (cx - x1)) / length;
+				if (d <= -radius) {
+					// the circle is out of the polygon
+					result.area = 0;
+					result.centroid.set(cx, cy);
+					return true;
+				}
+				if (d < radius) {
+					if (cut)
+						return false;
+					cut = true;
+					distance = d;
+					normalX = -edgeY / length;
+					normalY = edgeX / length;
 				}
-				s = e;
 			}
-			cp1 = cp2;
+			x1 = x2;
+			y1 = y2;
 		}
 
-		return !outputVertices.isEmpty();
+		float r2 = radius * radius;
+		if (!cut) {
+			result.area = MathUtils.PI * r2;
+			result.centroid.set(cx, cy);
+			return true;
+		}
+
+		float chord = (float) Math.sqrt(Math.max(0, r2 - distance * distance)); // half chord length
+		float area = r2 * (float) Math.acos(-distance / radius) + distance * chord;
+		result.area = area;
+		if (area > 0) {
+			float offset = 2 * chord * chord * chord / (3 * area);
+			result.centroid.set(cx + normalX * offset, cy + normalY * offset);
+		} else {
+			result.centroid.set(cx, cy);
+		}
+		return true;
+	}
+
+	/**
+	 * Sutherland-Hodgman clipping over interleaved x/y arrays. The polygons must be counter-clockwise and the
+	 * clipping polygon must be convex. Every edge of the clipping polygon writes to one of the two buffers of the
+	 * result, alternating them so the last edge always ends in {@link ClippedPolygon#getVertices()}. The area and
+	 * centroid are found with one pass over the final vertices, relative to the first one to keep the precision far
+	 * from the origin.
+	 * @param subject Vertices of the polygon to clip. Must not be one of the buffers of the result
+	 * @param subjectCount Number of vertices of the polygon to clip
+	 * @param clip Vertices of the clipping polygon
+	 * @param clipCount Number of vertices of the clipping polygon
+	 * @param result It will be set with the vertices, area and centroid of the intersection polygon
+	 * @return Number of vertices of the intersection polygon, 0 if they don't intersect
+	 */
+	public static int clip(float[] subject, int subjectCount, float[] clip, int clipCount, ClippedPolygon result) {
+		result.ensureCapacity(subjectCount, clipCount);
+
+		float[] input = subject;
+		int inputCount = subjectCount;
+
+		float cp1x = clip[(clipCount - 1) * 2];
+		float cp1y = clip[(clipCount - 1) * 2 + 1];
+		for (int j = 0; j < clipCount && inputCount > 0; j++) {
+			float[] output = ((clipCount - 1 - j) & 1) == 0 ? result.vertices : result.scratch;
+			float cp2x = clip[j * 2];
+			float cp2y = clip[j * 2 + 1];
+			float edgeX = cp2x - cp1x;
+			float edgeY = cp2y - cp1y;
+
+			int n = 0;
+			float sx = input[(inputCount - 1) * 2];
+			float sy = input[(inputCount - 1) * 2 + 1];
+			float sSide = edgeX * (sy - cp1y) - edgeY * (sx - cp1x);
+			for (int i = 0; i < inputCount; i++) {
+				float ex = input[i * 2];
+				float ey = input[i * 2 + 1];
+				float eSide = edgeX * (ey - cp1y) - edgeY * (ex - cp1x);
+
+				if ((eSide > 0) != (sSide > 0)) {
+					// the edge crosses the clipping line
+					float t = sSide / (sSide - eSide);
+					output[n * 2] = sx + (ex - sx) * t;
+					output[n * 2 + 1] = sy + (ey - sy) * t;
+					n++;
+				}
+				if (eSide > 0) {
+					output[n * 2] = ex;
+					output[n * 2 + 1] = ey;
+					n++;
+				}
+
+				sx = ex;
+				sy = ey;
+				sSide = eSide;
+			}
+
+			input = output;
+			inputCount = n;
+			cp1x = cp2x;
+			cp1y = cp2y;
+		}
+
+		result.count = inputCount;
+		if (inputCount == 0) {
+			result.area = 0;
+			result.centroid.set(clip[0], clip[1]);
+			return 0;
+		}
+
+		float[] vertices = result.vertices;
+		float ox = vertices[0];
+		float oy = vertices[1];
+		float area = 0, cx = 0, cy = 0;
+		float px = vertices[(inputCount - 1) * 2] - ox, py = vertices[(inputCount - 1) * 2 + 1] - oy;
+		for (int i = 0; i < inputCount; i++) {
+			float lx = vertices[i * 2] - ox, ly = vertices[i * 2 + 1] - oy;
+			float cross = px * ly - lx * py;
+			area += cross;
+			cx += (px + lx) * cross;
+			cy += (py + ly) * cross;
+			px = lx;
+			py = ly;
+		}
+
+		result.area = area * 0.5f;
+		if (area != 0)
+			result.centroid.set(cx / (3 * area) + ox, cy / (3 * area) + oy);
+		else
+			result.centroid.set(ox, oy);
+
+		return inputCount;
 	}
 
 	/**
@@ -135,28 +481,8 @@ public class IntersectionUtils {
 		return new Polygon(points);
 	}
 	
-	/**
-	 * Because the algorithm is based on vertices, and the circles do not have vertices, we create a square around it.
-	 * @param fixture Circle fixture
-	 * @return A square instead of the circle
-	 */
-	private static PolygonShape circleToSquare(Fixture fixture) {
-		Vector2 position = fixture.getBody().getLocalCenter();
-		float x = position.x;
-		float y = position .y;
-		float radius = fixture.getShape().getRadius();
-		
-		PolygonShape octagon = new PolygonShape();
-		Vector2[] vertices = new Vector2[4];
-		vertices[0] = new Vector2(x-radius, y+radius);
-		vertices[1]= new Vector2(x+radius, y+radius);
-		vertices[2]= new Vector2(x-radius, y-radius);
-		vertices[3]= new Vector2(x+radius, y-radius);
-		octagon.set((Vector2[]) vertices);
+	private static final RandomXS128 random = new RandomXS128();
 
-		return octagon;
-	}
-	
 	/**
 	 * Obtains a random vector
 	 * @param maxLength Max length
@@ -173,7 +499,7 @@ public class IntersectionUtils {
 	 * @return Random float
 	 */
 	private static float getRandomFloat(double min, double max) {
-		return (float) (new Random().nextDouble() * (max - min) + min);
+		return (float) (random.nextDouble() * (max - min) + min);
 	}
 
 	private static Vector2 fromPolar(float angle, float magnitude) {
@@ -0,0 +1,285 @@
+package com.dream.box2d.water;
+
+/**
+ * Fixed-capacity store of splash particles. Every particle is a slot in parallel arrays, used as a ring in the order
+ * the particles were created, so the oldest one is always at the head and is replaced at once when the store is
+ * full. Particles are read by their index from the oldest one, and nothing is allocated after creation.
+ */
+public class ParticleSystem {
+
+	/**
+	 * What to do when a new particle is created and the store is full
+	 */
+	public enum EvictionPolicy {
+		/** The oldest particle is replaced by the new one */
+		OLDEST,
+		/** The new particle is discarded */
+		DROP_NEW
+	}
+
+	private static final float GRAVITY = -10;
+
+	private int capacity;
+	private int count;
+	private int head; // slot of the oldest particle
+	private EvictionPolicy evictionPolicy;
+
+	float[] x; // actual position
+	float[] y;
+	float[] previousX; // position before the last update, used to interpolate
+	float[] previousY;
+	float[] initX; // position on the x-axis where the particle was created
+	float[] velocityX; // initial velocity
+	float[] velocityY;
+	float[] time; // time since the particle was created
+	float[] radius;
+
+	/**
+	 * Main constructor
+	 * @param capacity Max number of live particles
+	 * @param evictionPolicy What to do when the store is full
+	 */
+	public ParticleSystem(int capacity, EvictionPolicy evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+		setCapacity(capacity);
+	}
+
+	/**
+	 * Creates a new particle. If the store is full the eviction policy decides which particle survives.
+	 * @param x Position on the x-axis
+	 * @param y Position on the y-axis
+	 * @param velocityX Initial velocity on the x-axis
+	 * @param velocityY Initial velocity on the y-axis
+	 * @param radius Radius of the texture
+	 * @return Index of the new particle, the last one, or -1 if it was discarded
+	 */
+	public int add(float x, float y, float velocityX, float velocityY, float radius) {
+		int i;
+		if (count < capacity) {
+			i = slot(count++);
+		} else if (evictionPolicy == EvictionPolicy.OLDEST && capacity > 0) {
+			// the oldest particle becomes the newest one
+			i = head;
+			head = slot(1);
+		} else {
+			return -1;
+		}
+
+		this.x[i] = x;
+		this.y[i] = y;
+		this.previousX[i] = x;
+		this.previousY[i] = y;
+		this.initX[i] = x;
+		this.velocityX[i] = velocityX;
+		this.velocityY[i] = velocityY;
+		this.time[i] = 0;
+		this.radius[i] = radius;
+		return count - 1;
+	}
+
+	/**
+	 * @param i Index of a particle, 0 for the oldest one
+	 * @return Slot of the particle in the arrays
+	 */
+	int slot(int i) {
+		int slot = head + i;
+		return slot >= capacity ? slot - capacity : slot;
+	}
+
+	/**
+	 * Update the position of each particle and removes the ones that have fallen into the water again. The
+	 * particles are visited from the newest one and the survivors are moved toward it, so the oldest ones, which
+	 * fall first, are removed by moving the head.
+	 * @param delta Time elapsed since the last update
+	 * @param surface Position on the y-axis of the water surface
+	 */
+	public void update(float delta, float surface) {
+		int last = count - 1; // index where the next survivor goes
+		for (int i = count - 1; i >= 0; i--) {
+			int from = slot(i);
+			float elapsedTime = time[from] + delta;
+
+			float y = (float) (surface + (Math.abs(velocityY[from]) * elapsedTime)
+					+ 0.5 * GRAVITY * elapsedTime * elapsedTime);
+			if (y < surface)
+				continue;
+
+			int to = slot(last--);
+			if (to != from)
+				move(from, to);
+			this.previousX[to] = this.x[to];
+			this.previousY[to] = this.y[to];
+			this.x[to] = initX[to] + velocityX[to] * elapsedTime;
+			this.y[to] = y;
+			this.time[to] = elapsedTime;
+		}
+		int removed = last + 1;
+		head = slot(removed);
+		count -= removed;
+	}
+
+	/**
+	 * Removes a particle, moving the older ones to keep the order
+	 * @param i Index of the particle
+	 */
+	public void remove(int i) {
+		for (int k = i; k > 0; k--) {
+			move(slot(k - 1), slot(k));
+		}
+		head = slot(1);
+		count--;
+	}
+
+	private void move(int from, int to) {
+		x[to] = x[from];
+		y[to] = y[from];
+		previousX[to] = previousX[from];
+		previousY[to] = previousY[from];
+		initX[to] = initX[from];
+		velocityX[to] = velocityX[from];
+		velocityY[to] = velocityY[from];
+		time[to] = time[from];
+		radius[to] = radius[from];
+	}
+
+	/**
+	 * Copies the live particles to another store, replacing its particles. Used to publish the particles simulated
+	 * by a worker thread.
+	 * @param target Store that receives the particles
+	 */
+	void copyTo(ParticleSystem target) {
+		if (target.capacity != capacity)
+			target.setCapacity(capacity);
+		target.count = count;
+		target.head = 0;
+		copy(x, target.x);
+		copy(y, target.y);
+		copy(previousX, target.previousX);
+		copy(previousY, target.previousY);
+		copy(initX, target.initX);
+		copy(velocityX, target.velocityX);
+		copy(velocityY, target.velocityY);
+		copy(time, target.time);
+		copy(radius, target.radius);
+		target.evictionPolicy = evictionPolicy;
+	}
+
+	/**
+	 * Copies the live particles of an array to the first slots of another one, from the oldest
+	 */
+	private void copy(float[] source, float[] target) {
+		int first = Math.min(count, capacity - head); // slots until the end of the array
+		System.arraycopy(source, head, target, 0, first);
+		System.arraycopy(source, 0, target, first, count - first);
+	}
+
+	/**
+	 * Removes all the particles
+	 */
+	public void clear() {
+		count = 0;
+		head = 0;
+	}
+
+	/**
+	 * Changes the max number of live particles. If there are more particles than the new capacity, the newest
+	 * ones are discarded.
+	 * @param capacity Max number of live particles
+	 */
+	public void setCapacity(int capacity) {
+		this.count = Math.min(count, capacity);
+		this.x = resize(x, capacity);
+		this.y = resize(y, capacity);
+		this.previousX = resize(previousX, capacity);
+		this.previousY = resize(previousY, capacity);
+		this.initX = resize(initX, capacity);
+		this.velocityX = resize(velocityX, capacity);
+		this.velocityY = resize(velocityY, capacity);
+		this.time = resize(time, capacity);
+		this.radius = resize(radius, capacity);
+		this.capacity = capacity;
+		this.head = 0;
+	}
+
+	private float[] resize(float[] array, int capacity) {
+		float[] resized = new float[capacity];
+		if (array != null)
+			copy(array, resized);
+		return resized;
+	}
+
+	/**
+	 * Copies the state of a particle to a particle object
+	 * @param i Index of the particle
+	 * @param out Particle to fill
+	 * @return The out particle
+	 */
+	public Particle get(int i, Particle out) {
+		int slot = slot(i);
+		out.getPosition().set(x[slot], y[slot]);
+		out.getVelocity().set(velocityX[slot], velocityY[slot]);
+		out.setInitX(initX[slot]);
+		out.setTime(time[slot]);
+		out.setRadius(radius[slot]);
+		return out;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public EvictionPolicy getEvictionPolicy() {
+		return evictionPolicy;
+	}
+
+	public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+	}
+
+	public float getX(int i) {
+		return x[slot(i)];
+	}
+
+	public float getY(int i) {
+		return y[slot(i)];
+	}
+
+	/**
+	 * Gets the position on the x-axis of a particle between the previous update and the actual one
+	 * @param i Index of the particle
+	 * @param alpha Fraction of the step, from 0 (previous) to 1 (actual)
+	 * @return Interpolated position
+	 */
+	public float getInterpolatedX(int i, float alpha) {
+		int slot = slot(i);
+		return previousX[slot] + (x[slot] - previousX[slot]) * alpha;
+	}
+
+	/**
+	 * Gets the position on the y-axis of a particle between the previous update and the actual one
+	 * @param i Index of the particle
+	 * @param alpha Fraction of the step, from 0 (previous) to 1 (actual)
+	 * @return Interpolated position
+	 */
+	public float getInterpolatedY(int i, float alpha) {
+		int slot = slot(i);
+		return previousY[slot] + (y[slot] - previousY[slot]) * alpha;
+	}
+
+	public float getRadius(int i) {
+		return radius[slot(i)];
+	}
+
+	public float getTime(int i) {
+		return time[slot(i)];
+	}
+
+}
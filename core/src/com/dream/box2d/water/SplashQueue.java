@@ -0,0 +1,103 @@
+package com.dream.box2d.water;
+
+/**
+ * Lock-free ring that hands the splashes found by the physics thread to the thread that simulates the waves: the
+ * speeds given to the columns touched by the bodies and the splash particles to create. There must be a single
+ * producer and a single consumer at a time. The ring has a fixed capacity and splashes are dropped while it is
+ * full, so the producer never waits; the water counts them in its {@link WaterStats}.
+ */
+class SplashQueue {
+
+	private static final int VALUES = 5; // values of every entry
+
+	private final int mask;
+	private final int[] columns; // column of a speed, or -1 for a particle
+	private final float[] values; // speed of the column, or x, y, velocity x, velocity y and radius of the particle
+
+	// positions only grow, the slot is the position modulo the capacity
+	private volatile int head; // next entry to read, written by the consumer
+	private volatile int tail; // next entry to write, written by the producer
+
+	/**
+	 * Main constructor
+	 * @param capacity Min number of entries, rounded up to a power of two
+	 */
+	SplashQueue(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		mask = slots - 1;
+		columns = new int[slots];
+		values = new float[slots * VALUES];
+	}
+
+	/**
+	 * Adds the speed given to a column. Called by the producer.
+	 * @return False if the ring is full and the speed was dropped
+	 */
+	boolean offerSpeed(int column, float speed) {
+		int t = tail;
+		if (t - head > mask)
+			return false;
+		int slot = t & mask;
+		columns[slot] = column;
+		values[slot * VALUES] = speed;
+		tail = t + 1; // publishes the entry
+		return true;
+	}
+
+	/**
+	 * Adds a splash particle. Called by the producer.
+	 * @return False if the ring is full and the particle was dropped
+	 */
+	boolean offerParticle(float x, float y, float velocityX, float velocityY, float radius) {
+		int t = tail;
+		if (t - head > mask)
+			return false;
+		int slot = t & mask;
+		int v = slot * VALUES;
+		columns[slot] = -1;
+		values[v] = x;
+		values[v + 1] = y;
+		values[v + 2] = velocityX;
+		values[v + 3] = velocityY;
+		values[v + 4] = radius;
+		tail = t + 1;
+		return true;
+	}
+
+	/**
+	 * @return Position after the last entry added, to drain the entries added until now
+	 */
+	int mark() {
+		return tail;
+	}
+
+	/**
+	 * Applies the entries added before a mark to the simulated state. Called by the consumer.
+	 * @param field Height field where the speeds are set
+	 * @param particles Store where the particles are created, or null
+	 * @param end Mark returned by {@link #mark()}
+	 * @return Number of entries applied
+	 */
+	int drainTo(HeightField field, ParticleSystem particles, int end) {
+		int h = head;
+		int t = end;
+		for (int i = h; i != t; i++) {
+			int slot = i & mask;
+			int v = slot * VALUES;
+			int column = columns[slot];
+			if (column >= 0) {
+				field.speeds[column] = values[v];
+				field.wake(column);
+			} else if (particles != null) {
+				particles.add(values[v], values[v + 1], values[v + 2], values[v + 3], values[v + 4]);
+			}
+		}
+		head = t; // frees the slots
+		return t - h;
+	}
+
+	boolean isEmpty() {
+		return head == tail;
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.dream.box2d.water;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs all the spread passes of a range of columns on its own copy of the heights. The copy includes one halo
+ * column per pass at each side, so the tile does not need the result of its neighbours between passes. Every
+ * column adds the same deltas in the same order as {@link HeightField#spread(float, int)}, so the result is
+ * bit-identical to the sequential one.
+ */
+class SpreadTile extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	private final HeightField field;
+	private final int start; // first column of the tile
+	private final int end; // column after the last one
+	private float spread;
+	private int passes;
+	private float[] output; // heights after the passes, only the range of the tile is written
+
+	// local heights, including the halo
+	private float[] current = new float[0];
+	private float[] next = new float[0];
+
+	SpreadTile(HeightField field, int start, int end) {
+		this.field = field;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Prepares the tile to be invoked again
+	 * @param spread Spread value
+	 * @param passes Number of passes
+	 * @param output Array where the heights of the tile columns are written
+	 */
+	void set(float spread, int passes, float[] output) {
+		this.spread = spread;
+		this.passes = passes;
+		this.output = output;
+		reinitialize();
+	}
+
+	@Override
+	protected void compute() {
+		int n = field.size;
+		int from = Math.max(0, start - passes);
+		int to = Math.min(n, end + passes);
+		int length = to - from;
+		if (current.length < length) {
+			current = new float[length];
+			next = new float[length];
+		}
+
+		float[] heights = current;
+		float[] nextHeights = next;
+		float[] speeds = field.speeds;
+		System.arraycopy(field.heights, from, heights, 0, length);
+
+		// local range whose heights are valid. It shrinks one column per pass, except at the ends of the field
+		int low = 0;
+		int high = length;
+		for (int j = 0; j < passes; j++) {
+			if (from > 0)
+				low++;
+			if (to < n)
+				high--;
+
+			for (int k = low; k < high; k++) {
+				int i = from + k;
+				boolean own = i >= start && i < end;
+				float height = heights[k];
+				float result = height;
+				// pulls of the left and right neighbours, named like the deltas of the height field
+				if (i > 0) {
+					float lDelta = spread * (heights[k - 1] - height);
+					result += lDelta;
+					if (own)
+						speeds[i] += lDelta;
+				}
+				if (i < n - 1) {
+					float rDelta = spread * (heights[k + 1] - height);
+					result += rDelta;
+					if (own)
+						speeds[i] += rDelta;
+				}
+				nextHeights[k] = result;
+			}
+
+			float[] swap = heights;
+			heights = nextHeights;
+			nextHeights = swap;
+		}
+
+		System.arraycopy(heights, start - from, output, start, end - start);
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.graphics.Color;
+
+/**
+ * Vertices of the water surface, ready to be drawn with a PolygonSpriteBatch. Every column has a bottom and a top
+ * vertex and every pair of columns forms a quad made of two triangles. The vertex buffer is created once and
+ * every frame only the top vertices are updated from the height field. The triangles of a quad only depend on the
+ * position of the quad inside the drawn range, so the same indices are used for any range of columns.
+ */
+public class SurfaceMesh {
+
+	/** Floats per vertex: x, y, color, u, v */
+	public static final int VERTEX_SIZE = 5;
+	/** Max vertices that can be addressed by the short indices */
+	public static final int MAX_VERTICES = 32767;
+
+	private final int columns;
+	private final int maxQuads; // max quads drawn with one call
+	private final float[] vertices;
+	private final short[] triangles;
+
+	// texture region used to find the texture coordinates, as done by PolygonRegion
+	private float u, v, uvWidth, uvHeight;
+	private float regionWidth = 1, regionHeight = 1;
+
+	/**
+	 * Main constructor
+	 * @param columns Number of columns of the height field
+	 */
+	public SurfaceMesh(int columns) {
+		this.columns = columns;
+		this.vertices = new float[columns * 2 * VERTEX_SIZE];
+		this.maxQuads = Math.max(0, Math.min(columns, MAX_VERTICES / 2) - 1);
+		this.triangles = new short[maxQuads * 6];
+
+		for (int i = 0, t = 0; i < maxQuads; i++) {
+			short bottom1 = (short) (i * 2);
+			short top1 = (short) (i * 2 + 1);
+			short bottom2 = (short) (i * 2 + 2);
+			short top2 = (short) (i * 2 + 3);
+			triangles[t++] = bottom1;
+			triangles[t++] = top1;
+			triangles[t++] = top2;
+			triangles[t++] = bottom1;
+			triangles[t++] = top2;
+			triangles[t++] = bottom2;
+		}
+	}
+
+	/**
+	 * Sets the texture region whose coordinates are used for the vertices
+	 * @param u Left texture coordinate of the region
+	 * @param v Top texture coordinate of the region
+	 * @param u2 Right texture coordinate of the region
+	 * @param v2 Bottom texture coordinate of the region
+	 * @param regionWidth Width of the region in pixels
+	 * @param regionHeight Height of the region in pixels
+	 */
+	public void setTextureRegion(float u, float v, float u2, float v2, float regionWidth, float regionHeight) {
+		this.u = u;
+		this.v = v;
+		this.uvWidth = u2 - u;
+		this.uvHeight = v2 - v;
+		this.regionWidth = regionWidth;
+		this.regionHeight = regionHeight;
+	}
+
+	/**
+	 * Fills all the vertices. Must be called when the columns or the texture region change.
+	 * @param field Height field of the water
+	 */
+	public void init(HeightField field) {
+		for (int i = 0; i < columns; i++) {
+			int bottom = i * 2 * VERTEX_SIZE;
+			int top = bottom + VERTEX_SIZE;
+			float x = field.x[i];
+			float u = this.u + uvWidth * (x / regionWidth);
+			vertices[bottom] = x;
+			vertices[bottom + 1] = field.y[i];
+			vertices[bottom + 3] = u;
+			vertices[bottom + 4] = v + uvHeight * (1 - field.y[i] / regionHeight);
+			vertices[top] = x;
+			vertices[top + 3] = u;
+		}
+		update(field, 1);
+	}
+
+	/**
+	 * Updates the top vertices with the height of each column, interpolated between the last two steps. The
+	 * alpha of the column decreases a bit when it is under its target height.
+	 * @param field Height field of the water
+	 * @param alpha Fraction of the step, from 0 (previous) to 1 (actual)
+	 */
+	public void update(HeightField field, float alpha) {
+		update(field, alpha, 0, columns);
+	}
+
+	/**
+	 * Same as {@link #update(HeightField, float)} for a range of columns, usually the ones that are seen
+	 * @param field Height field of the water
+	 * @param alpha Fraction of the step, from 0 (previous) to 1 (actual)
+	 * @param from First column
+	 * @param to Column after the last one
+	 */
+	public void update(HeightField field, float alpha, int from, int to) {
+		float[] heights = field.heights;
+		float[] previousHeights = field.previousHeights;
+		float[] targetHeights = field.targetHeights;
+		for (int i = from; i < to; i++) {
+			int bottom = i * 2 * VERTEX_SIZE;
+			int top = bottom + VERTEX_SIZE;
+			float height = previousHeights[i] + (heights[i] - previousHeights[i]) * alpha;
+			float color = Color.toFloatBits(1f, 1f, 1f, Math.min(1, Math.max(0.95f, height / targetHeights[i])));
+			vertices[bottom + 2] = color;
+			vertices[top + 1] = height;
+			vertices[top + 2] = color;
+			vertices[top + 4] = v + uvHeight * (1 - height / regionHeight);
+		}
+	}
+
+	/**
+	 * @return Vertices of every column. Column i starts at i * 2 * {@link #VERTEX_SIZE}
+	 */
+	public float[] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * @return Triangles of {@link #getMaxQuads()} consecutive quads, relative to the first vertex of the range
+	 */
+	public short[] getTriangles() {
+		return triangles;
+	}
+
+	/**
+	 * @return Max quads that can be drawn with one call
+	 */
+	public int getMaxQuads() {
+		return maxQuads;
+	}
+
+	/**
+	 * @return Max vertices of one call
+	 */
+	public int getMaxVertices() {
+		return (maxQuads + 1) * 2;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+}
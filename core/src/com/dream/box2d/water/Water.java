@@ -1,24 +1,11 @@
 package com.dream.box2d.water;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
-import java.util.Set;
-
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Camera;
-import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.PolygonRegion;
-import com.badlogic.gdx.graphics.g2d.PolygonSprite;
-import com.badlogic.gdx.graphics.g2d.PolygonSpriteBatch;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer.ShapeType;
-import com.badlogic.gdx.math.EarClippingTriangulator;
-import com.badlogic.gdx.math.GeometryUtils;
-import com.badlogic.gdx.math.Polygon;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.Body;
 import com.badlogic.gdx.physics.box2d.BodyDef;
@@ -27,38 +14,78 @@ import com.badlogic.gdx.physics.box2d.Fixture;
 import com.badlogic.gdx.physics.box2d.FixtureDef;
 import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
-
-import javafx.util.Pair;
+import com.badlogic.gdx.utils.IntArray;
 
 /**
- * Allows to create an object to simulate the behavior of water in interaction with other bodies
+ * Allows to create an object to simulate the behavior of water in interaction with other bodies. It does not
+ * depend on the libGDX graphics, so it can run without a GL context. Use a {@link WaterRenderer} to draw it.
  */
 public class Water implements Disposable {
 
 	private boolean waves;
 	private boolean splashParticles;
-	private boolean debugMode;
 
-	SpriteBatch spriteBatch;
-	PolygonSpriteBatch polyBatch;
-	ShapeRenderer shapeBatch;
-	TextureRegion textureWater;
-	Texture textureDrop;
-	
-	private Set<Pair<Fixture, Fixture>> fixturePairs; // contacts between this object and other dynamic bodies
-	private List<WaterColumn> columns; // represent the height of the waves
-	List<Particle> particles; // splash particles
+	private final ContactRegistry contacts = new ContactRegistry(); // contacts between this object and other dynamic bodies
+	private HeightField heightField; // state of the waves
+	private WaveSolver waveSolver = new ExplicitWaveSolver();
+	private List<WaterColumn> columns; // views of the height field columns
+	ParticleSystem particles; // splash particles
 	private Body body; // Box2d body
-
-	private static Random rand = new Random();
+	private WaterVolume volume; // shape of the water, one fixture per convex piece
+	private float surface; // highest target height, the splash particles end under it
+
+	private RandomXS128 random = new RandomXS128(); // splash particles
+	private boolean deterministic; // the state does not depend on the view
+
+	public static final int DEFAULT_MAX_PARTICLES = 500;
+	public static final float DEFAULT_COLUMN_SEPARATION = 0.04f; // 4 px between every column
+
+	// scratch objects reused by every update, so the buoyancy step does not allocate
+	private final ClippedPolygon clippedPolygon = new ClippedPolygon();
+	private final Array<BodySubmersion> submersions = new Array<BodySubmersion>(false, 16); // bodies under water
+	private final Array<BodySubmersion> freeSubmersions = new Array<BodySubmersion>(false, 16);
+	private final CirclePolygonCache circlePolygons = new CirclePolygonCache(); // polygons of the circle fixtures
+	private final FixtureVertexCache polygonVertices = new FixtureVertexCache(); // polygon fixtures, per update
+	private BodyStateCache bodyStates = new BodyStateCache(); // bodies read from Box2D once per update
+	private boolean sharedBodyStates; // the cache is shared with other water objects, the caller begins and flushes it
+	private final Vector2 midPoint = new Vector2();
+	private final Vector2 velocityDirection = new Vector2();
+	private final Vector2 edge = new Vector2();
+	private final Vector2 normal = new Vector2();
+	private final Vector2 firstPoint = new Vector2();
+	private final Vector2 secondPoint = new Vector2();
+	private final IntArray touchedColumns = new IntArray(); // columns with a body in contact
+	private int[] touchedFrames; // last update in which the body of each column touched it
+	private int frame; // number of updates
 
 	private float tension = 0.025f;
 	private float dampening = 0.025f;
 	private float spread = 0.25f;
 	private float density = 1f;
+
+	private float timeStep = 1 / 60f; // waves are tuned for 60 steps per second
+	private int maxSubSteps = 5;
+	private float accumulator; // time not simulated yet
+	private float alpha = 1; // fraction of a step between the last state and the next one
 	
-	private final float columnSparation = 0.04f; // 4 px between every column
+	private float columnSparation = DEFAULT_COLUMN_SEPARATION;
+
+	// part of the water that is seen, the waves out of it are frozen
+	private boolean hasView;
+	private float viewLeft;
+	private float viewRight;
+	private float viewMargin = 1f;
+
+	private ForkJoinPool wavesPool; // pool used to propagate the waves of wide bodies
+	private int parallelThreshold = Integer.MAX_VALUE;
+
+	private WaterStats stats; // measures of every frame, null if they are not taken
+	private long waveNanos, particleNanos; // measured by the steps, maybe on the worker, not in the stats yet
+
+	private Executor simulationExecutor; // runs the waves and particles on another thread, or null
+	private WaveWorker worker;
 
 	/**
 	 * Main constructor. Will create an object with the effect of waves and particles by default.
@@ -76,22 +103,10 @@ public class Water implements Disposable {
 
 		this.waves = waves;
 		this.splashParticles = splashParticles;
-		this.fixturePairs = new HashSet<Pair<Fixture, Fixture>>();
-		this.setDebugMode(false);
-
-		if (waves) {
-			textureWater = new TextureRegion(new Texture(Gdx.files.internal("water.png")));
-			polyBatch = new PolygonSpriteBatch();
-		}
 
 		if (splashParticles) {
-			textureDrop = new Texture(Gdx.files.internal("drop.png"));
-			spriteBatch = new SpriteBatch();
-			particles = new ArrayList<Particle>();
+			particles = new ParticleSystem(DEFAULT_MAX_PARTICLES, ParticleSystem.EvictionPolicy.OLDEST);
 		}
-
-		shapeBatch = new ShapeRenderer();
-		shapeBatch.setColor(0, 0.5f, 1, 1);
 	}
 
 	/**
@@ -101,10 +116,27 @@ public class Water implements Disposable {
 	 * @param y Position of the y coordinate of the center of the body
 	 * @param width Body width
 	 * @param height Body height
-	 * @param density Body density
 	 */
 	public void createBody(World world, float x, float y, float width, float height) {
-		
+		float halfWidth = width / 2, halfHeight = height / 2;
+		createBody(world, x, y, new float[] { -halfWidth, -halfHeight, halfWidth, -halfHeight, halfWidth, halfHeight,
+				-halfWidth, halfHeight });
+	}
+
+	/**
+	 * Creates the body of the water with the shape of a polygon, like a pool, a slanted tank or a cave basin. The
+	 * polygon can be concave: it is split once in convex sensor fixtures (see {@link WaterVolume}). The columns of
+	 * the waves go from the lower to the upper sides of the polygon, so its top should be level. Under an overhang
+	 * they only take the highest part of the polygon (see {@link WaterVolume#getBottom(float)}).
+	 * @param world Our box2d world
+	 * @param x Position of the x coordinate of the body
+	 * @param y Position of the y coordinate of the body
+	 * @param vertices Vertices of a simple polygon relative to the position, interleaved x and y values
+	 * @throws IllegalArgumentException If the polygon has less than three vertices, no area or sides that cross
+	 */
+	public void createBody(World world, float x, float y, float[] vertices) {
+		WaterVolume volume = new WaterVolume(vertices);
+
 		BodyDef bodyDef = new BodyDef();
 		bodyDef.type = BodyType.StaticBody;
 		bodyDef.position.set(x, y);
@@ -112,365 +144,571 @@ public class Water implements Disposable {
 		// Create our body in the world using our body definition
 		body = world.createBody(bodyDef);
 		body.setUserData(this);
-		
-		PolygonShape square = new PolygonShape();
-		square.setAsBox(width / 2, height / 2);
+		this.volume = volume;
 
-		// Create a fixture definition to apply our shape to
+		// One sensor fixture per convex piece, which knows its index
+		PolygonShape shape = new PolygonShape();
 		FixtureDef fixtureDef = new FixtureDef();
-		fixtureDef.shape = square;
-		
-		// Must be a sensor
+		fixtureDef.shape = shape;
 		fixtureDef.isSensor = true;
+		for (int i = 0; i < volume.getPieceCount(); i++) {
+			shape.set(volume.getVertices(i));
+			body.createFixture(fixtureDef).setUserData(Integer.valueOf(i));
+		}
+		shape.dispose();
 
-		// Create our fixture and attach it to the body
-		body.createFixture(fixtureDef);
-		
-		square.dispose();
-
-		// Water columns (waves)
+		// Water columns (waves), from the lower to the upper sides of the polygon
 		if (waves) {
-			int size = (int) (width / this.columnSparation);
+			float minX = volume.getMinX();
+			int size = (int) ((volume.getMaxX() - minX) / this.columnSparation) + 1;
+			heightField = new HeightField(size);
 			columns = new ArrayList<WaterColumn>(size);
-			for (int i = 0; i < size+1; i++) {
-				float cx = i * this.columnSparation + x - width / 2;
-				columns.add(new WaterColumn(cx, y - height / 2, y + height / 2, y + height / 2, 0));
+			surface = -Float.MAX_VALUE;
+			for (int i = 0; i < size; i++) {
+				float cx = i * this.columnSparation + x + minX;
+				float local = Math.min(minX + i * this.columnSparation, volume.getMaxX());
+				float top = y + volume.getTop(local);
+				heightField.set(i, cx, y + volume.getBottom(local), top, top, 0);
+				columns.add(new WaterColumn(heightField, i));
+				surface = Math.max(surface, top);
 			}
+			heightField.setGrid(x + minX, this.columnSparation);
+			heightField.setParallelism(wavesPool, parallelThreshold, HeightField.DEFAULT_TILE_SIZE);
+			touchedFrames = new int[size];
+			updateFocus();
+			startWorker();
 		}
 	}
 
 	/**
 	 * Updates the position of bodies in contact with water. To do this, it applies a force that counteracts
-	 * gravity by calculating the area in contact, centroid and force required. 
+	 * gravity by calculating the area in contact, centroid and force required. Box2D clears the forces after
+	 * every step, so it must be called once per world step, right after it. The transform and velocities of every
+	 * body in contact are read from Box2D once per call, and the forces of all its fixtures are summed and applied
+	 * with one force and one torque. The submerged parts of the fixtures of a body are added together, without
+	 * counting twice the area where they overlap, and the splashes are found once per body. If the body states are shared (see {@link #setBodyStates(BodyStateCache)}),
+	 * forces are only applied when the caller flushes the cache.
 	 */
 	public void update() {
-		if (body != null && fixturePairs != null) {
+		WaterStats stats = this.stats;
+		long time = stats != null ? System.nanoTime() : 0;
+
+		frame++;
+		if (!sharedBodyStates)
+			bodyStates.begin();
+		if (body != null) {
 			World world = body.getWorld();
-			for (Pair<Fixture, Fixture> pair : fixturePairs) {
+			Vector2 gravity = world.getGravity();
+			// the pieces of the water only move with the body
+			if (volume != null && !contacts.isEmpty())
+				volume.setTransform(bodyStates.get(body));
+			polygonVertices.begin();
+			for (int p = 0; p < contacts.size(); p++) {
 				
-				Fixture fixtureA = pair.getKey();
-				Fixture fixtureB = pair.getValue();
+				Fixture fixtureA = contacts.getWaterFixture(p);
+				Fixture fixtureB = contacts.getBodyFixture(p);
+
+				/* Get fixtures bodies */
+				BodyState fluidState = bodyStates.get(fixtureA.getBody());
+				BodyState bodyState = bodyStates.get(fixtureB.getBody());
 				
-				List<Vector2> clippedPolygon = new ArrayList<Vector2>();
-				if (IntersectionUtils.findIntersectionOfFixtures(fixtureA, fixtureB, clippedPolygon)) {
-					
-					// find centroid and area
-					Polygon interPolygon = IntersectionUtils.getIntersectionPolygon(clippedPolygon);
-					Vector2 centroid = new Vector2();
-					GeometryUtils.polygonCentroid(interPolygon.getVertices(), 0, interPolygon.getVertices().length, centroid);
-					float area = interPolygon.area();
-			
-					/* Get fixtures bodies */
-					Body fluidBody = fixtureA.getBody();
-					Body fixtureBody = fixtureB.getBody();
-			
-					// apply buoyancy force (fixtureA is the fluid)
-					float displacedMass = this.density * area;
-					Vector2 buoyancyForce = new Vector2(displacedMass * -world.getGravity().x,
-							displacedMass * -world.getGravity().y);
-					fixtureB.getBody().applyForce(buoyancyForce, centroid, true);
-			
-					float dragMod = 0.25f; // adjust as desired
-					float liftMod = 0.25f; // adjust as desired
-					float maxDrag = 2000; // adjust as desired
-					float maxLift = 500; // adjust as desired
-					
-					/* Apply drag and lift forces */
-					int polygonVertices = clippedPolygon.size();
-					for (int i = 0; i < polygonVertices; i++) {
-			
-						/* End points and mid point of the edge */
-						Vector2 firstPoint = clippedPolygon.get(i);
-						Vector2 secondPoint = clippedPolygon.get((i + 1) % polygonVertices);
-						Vector2 midPoint = firstPoint.cpy().add(secondPoint).scl(0.5f);
-			
-						/*
-						 * Find relative velocity between the object and the fluid at edge
-						 * mid point.
-						 */
-						Vector2 velocityDirection = new Vector2(fixtureBody
-								.getLinearVelocityFromWorldPoint(midPoint)
-								.sub(fluidBody.getLinearVelocityFromWorldPoint(midPoint)));
-						float velocity = velocityDirection.len();
-						velocityDirection.nor();
-			
-						Vector2 edge = secondPoint.cpy().sub(firstPoint);
-						float edgeLength = edge.len();
-						edge.nor();
-			
-						Vector2 normal = new Vector2(edge.y, -edge.x);
-						float dragDot = normal.dot(velocityDirection);
-			
-						if (dragDot >= 0) {
-			
-							/*
-							 * Normal don't point backwards. This is a leading edge. Store
-							 * the result of multiply edgeLength, density and velocity
-							 * squared
-							 */
-							float tempProduct = edgeLength * density * velocity * velocity;
-			
-							float drag = dragDot * dragMod * tempProduct;
-							drag = Math.min(drag, maxDrag);
-							Vector2 dragForce = velocityDirection.cpy().scl(-drag);
-							fixtureBody.applyForce(dragForce, midPoint, true);
-			
-							/* Apply lift force */
-							float liftDot = edge.dot(velocityDirection);
-							float lift = dragDot * liftDot * liftMod * tempProduct;
-							lift = Math.min(lift, maxLift);
-							Vector2 liftDirection = new Vector2(-velocityDirection.y,
-									velocityDirection.x);
-							Vector2 liftForce = liftDirection.scl(lift);
-							fixtureBody.applyForce(liftForce, midPoint, true);
-							
-							
-							fixtureBody.applyTorque(-fixtureBody.getAngularVelocity()/100, true);
+				// pieces of the volume are clipped from their cached vertices, if their box touches the fixture
+				int piece = getPiece(fixtureA);
+				boolean intersects = piece >= 0
+						? volume.intersect(piece, fixtureB, bodyState, clippedPolygon, circlePolygons, polygonVertices)
+						: IntersectionUtils.findIntersectionOfFixtures(fixtureA, fluidState, fixtureB, bodyState,
+								clippedPolygon, circlePolygons);
+				if (stats != null) {
+					long now = System.nanoTime();
+					stats.clipNanos += now - time;
+					stats.clippedVertices += intersects ? clippedPolygon.getCount() : 0;
+					time = now;
+				}
+
+				if (intersects) {
+
+					// the submerged parts of all the fixtures of a body are added together
+					BodySubmersion submersion = bodyState.submersion;
+					if (submersion == null) {
+						if (freeSubmersions.size > 0) {
+							submersion = freeSubmersions.pop();
+							if (stats != null)
+								stats.allocationsAvoided++;
+						} else {
+							submersion = new BodySubmersion();
 						}
+						submersion.reset(bodyState);
+						bodyState.submersion = submersion;
+						submersions.add(submersion);
 					}
-					
-					if (waves && area > 0.1f) {
-						updateColumns(fixtureB.getBody(), clippedPolygon);
+					submersion.add(clippedPolygon);
+
+					addDragAndLift(fluidState, bodyState, clippedPolygon, piece);
+					if (stats != null) {
+						long now = System.nanoTime();
+						stats.forceNanos += now - time;
+						time = now;
 					}
 				}
 			}
+
+			// buoyancy and splashes, once per body
+			for (int i = 0; i < submersions.size; i++) {
+				BodySubmersion submersion = submersions.get(i);
+				BodyState bodyState = submersion.state;
+				if (submersion.polygons > 1)
+					submersion.removeOverlaps();
+
+				// add buoyancy force (fixtureA is the fluid)
+				float area = (float) submersion.area;
+				if (area > 0) {
+					float displacedMass = this.density * area;
+					bodyState.addForce(displacedMass * -gravity.x, displacedMass * -gravity.y, submersion.getCentroidX(),
+							submersion.getCentroidY());
+				}
+
+				if (stats != null) {
+					long now = System.nanoTime();
+					stats.forceNanos += now - time;
+					time = now;
+				}
+
+				if (waves && area > 0.1f) {
+					updateColumns(submersion);
+				}
+
+				if (stats != null) {
+					long now = System.nanoTime();
+					stats.columnNanos += now - time;
+					time = now;
+				}
+
+				bodyState.submersion = null;
+				freeSubmersions.add(submersion);
+			}
+			submersions.clear();
 		}
-		
-		if (waves && splashParticles && !particles.isEmpty()) {
-			updateParticles();
+
+		if (!sharedBodyStates)
+			bodyStates.flush();
+
+		if (stats != null) {
+			long now = System.nanoTime();
+			stats.forceNanos += now - time;
+			time = now;
+		}
+
+		if (waves) {
+			releaseColumns();
+		}
+
+		if (stats != null) {
+			stats.columnNanos += System.nanoTime() - time;
+			stats.pairs += contacts.size();
 		}
-		
 	}
 
 	/**
-	 * Update the position of each particle
+	 * @return Index of the piece of the volume of a water fixture, or -1 if it is not one of them
 	 */
-	private void updateParticles() {
-		List<Particle> particlesCopy = new ArrayList<Particle>(particles);
-		for (Particle particle : particles) {
+	private int getPiece(Fixture waterFixture) {
+		Object piece = waterFixture.getUserData();
+		return volume != null && piece instanceof Integer ? (Integer) piece : -1;
+	}
 
-			float elapsedTime = particle.getTime() + Gdx.graphics.getDeltaTime();
+	/**
+	 * Adds the drag and lift forces of the leading edges of the submerged part of a fixture. The sides shared by
+	 * two pieces of the volume are inside the water, so they are skipped.
+	 * @param fluidState State of the water body
+	 * @param bodyState State of the body of the fixture
+	 * @param polygon Submerged part of the fixture
+	 * @param piece Index of the piece of the volume that was clipped, or -1
+	 */
+	private void addDragAndLift(BodyState fluidState, BodyState bodyState, ClippedPolygon polygon, int piece) {
+		int polygonVertices = polygon.getCount();
+		float dragMod = 0.25f; // adjust as desired
+		float liftMod = 0.25f; // adjust as desired
+		float maxDrag = 2000; // adjust as desired
+		float maxLift = 500; // adjust as desired
+		
+		for (int i = 0; i < polygonVertices; i++) {
+
+			/* End points and mid point of the edge */
+			int next = (i + 1) % polygonVertices;
+			firstPoint.set(polygon.getX(i), polygon.getY(i));
+			secondPoint.set(polygon.getX(next), polygon.getY(next));
+			if (piece >= 0 && volume.isInternal(piece, firstPoint.x, firstPoint.y, secondPoint.x, secondPoint.y))
+				continue;
+			midPoint.set(firstPoint).add(secondPoint).scl(0.5f);
+
+			/*
+			 * Find relative velocity between the object and the fluid at edge
+			 * mid point.
+			 */
+			velocityDirection.set(bodyState.velocityX(midPoint.x, midPoint.y) - fluidState.velocityX(midPoint.x, midPoint.y),
+					bodyState.velocityY(midPoint.x, midPoint.y) - fluidState.velocityY(midPoint.x, midPoint.y));
+			float velocity = velocityDirection.len();
+			velocityDirection.nor();
+
+			edge.set(secondPoint).sub(firstPoint);
+			float edgeLength = edge.len();
+			edge.nor();
+
+			normal.set(edge.y, -edge.x);
+			float dragDot = normal.dot(velocityDirection);
+
+			if (dragDot >= 0) {
+
+				/*
+				 * Normal don't point backwards. This is a leading edge. Store
+				 * the result of multiply edgeLength, density and velocity
+				 * squared
+				 */
+				float tempProduct = edgeLength * density * velocity * velocity;
+
+				float drag = dragDot * dragMod * tempProduct;
+				drag = Math.min(drag, maxDrag);
+				bodyState.addForce(velocityDirection.x * -drag, velocityDirection.y * -drag, midPoint.x, midPoint.y);
+
+				/* Add lift force */
+				float liftDot = edge.dot(velocityDirection);
+				float lift = dragDot * liftDot * liftMod * tempProduct;
+				lift = Math.min(lift, maxLift);
+				bodyState.addForce(-velocityDirection.y * lift, velocityDirection.x * lift, midPoint.x, midPoint.y);
+				
+				// angular damping, once per body and step
+				if (!bodyState.damped) {
+					bodyState.addTorque(-bodyState.angularVelocity / 100);
+					bodyState.damped = true;
+				}
+			}
+		}
+	}
 
-			float y = (float) (columns.get(0).getTargetHeight() + (Math.abs(particle.getVelocity().y) * elapsedTime)
-					+ 0.5 * -10 * elapsedTime * elapsedTime);
+	/**
+	 * Advances the waves and splash particles. The elapsed time is accumulated and the simulation runs in fixed
+	 * steps, so its cost and behaviour do not depend on the frame rate. The time left is used to interpolate the
+	 * state that is drawn. With an executor (see {@link #setAsyncSimulation(Executor)}) the steps run on it.
+	 * @param delta Time elapsed since the last call, in seconds
+	 */
+	public void step(float delta) {
+		if (worker != null) {
+			worker.step(delta, deterministic);
+			// the next update must see the state of this step, like without a worker
+			if (deterministic)
+				worker.finish();
+		} else {
+			advance(delta);
+			addSimulationStats();
+		}
 
-			if (y < columns.get(0).getTargetHeight())
-				particlesCopy.remove(particle);
-			else {
-				float x = (float) (particle.getInitX() + particle.getVelocity().x * elapsedTime);
+		if (stats != null) {
+			ParticleSystem particles = getParticles();
+			HeightField heightField = getHeightField();
+			if (particles != null)
+				stats.particles += particles.size();
+			if (waves && heightField != null)
+				stats.activeColumns += heightField.getActiveEnd() - heightField.getActiveStart();
+		}
+	}
 
-				particle.setTime(elapsedTime);
-				particle.setPosition(new Vector2(x, y));
-			}
+	/**
+	 * Runs the fixed steps that fit in the elapsed time, on the calling thread
+	 * @param delta Time elapsed since the last call, in seconds
+	 */
+	void advance(float delta) {
+		accumulator += delta;
+		int steps = 0;
+		while (accumulator >= timeStep && steps < maxSubSteps) {
+			simulate(timeStep);
+			accumulator -= timeStep;
+			steps++;
 		}
 
-		particles = particlesCopy;
+		// drop the time that could not be simulated instead of trying to catch up later
+		if (accumulator >= timeStep)
+			accumulator = 0;
+
+		alpha = accumulator / timeStep;
 	}
 
 	/**
-	 * Update the speed of each column in case that a body has touched it.
-	 * @param body Body to evaluate
-	 * @param intersectionPoints Part of the body that is in contact with water
+	 * Runs one fixed step of the waves and splash particles
+	 * @param delta Duration of the step
 	 */
-	private void updateColumns(Body body, List<Vector2> intersectionPoints) {
+	private void simulate(float delta) {
+		boolean measure = stats != null;
+		long time = measure ? System.nanoTime() : 0;
 
-		float minX = Float.MAX_VALUE;
-		float maxX = Float.MIN_VALUE;
+		if (waves) {
+			updateWaves(delta);
+		}
 
-		for (Vector2 point : intersectionPoints) {
-			minX = Float.min(minX, point.x);
-			maxX = Float.max(maxX, point.x);
+		if (measure) {
+			long now = System.nanoTime();
+			waveNanos += now - time;
+			time = now;
 		}
 
-		for (int i = 0; i < columns.size(); i++) {
-			WaterColumn column = columns.get(i);
+		if (waves && splashParticles && !particles.isEmpty()) {
+			updateParticles(delta);
+		}
 
-			if (column.x() >= minX && column.x() <= maxX) {
-				// column points
-				Vector2 col1 = new Vector2(column.x(), column.getHeight());
-				Vector2 col2 = new Vector2(column.x(), body.getPosition().y - column.getHeight());
-
-				for (int j = 0; j < intersectionPoints.size() - 1; j++) {
-					// polygon, 1 line points
-					Vector2 p1 = new Vector2(intersectionPoints.get(j).x, intersectionPoints.get(j).y);
-					Vector2 p2 = null;
-					if (j != intersectionPoints.size() - 1) {
-						p2 = new Vector2(intersectionPoints.get(j + 1).x, intersectionPoints.get(j + 1).y);
-					}
+		if (measure) {
+			particleNanos += System.nanoTime() - time;
+		}
+	}
+
+	/**
+	 * Adds the times measured by the steps to the stats. With a worker it is called when a finished job is
+	 * published, so the stats are only written by the thread that calls {@link #step(float)}.
+	 */
+	void addSimulationStats() {
+		if (stats != null) {
+			stats.waveNanos += waveNanos;
+			stats.particleNanos += particleNanos;
+		}
+		waveNanos = particleNanos = 0;
+	}
 
-					Vector2 intersection = IntersectionUtils.intersection(col1, col2, p1, p2);
-					if (intersection != null && intersection.y < column.getHeight()) {
-						// column.setHeight((float) intersection.y());
-						if (body.getLinearVelocity().y < 0 && column.getActualBody() == null) {
-							column.setActualBody(body);
-							column.setSpeed(body.getLinearVelocity().y * 3 / 100);
+	/**
+	 * Update the position of each particle
+	 * @param delta Duration of the step
+	 */
+	private void updateParticles(float delta) {
+		particles.update(delta, surface);
+	}
+
+	/**
+	 * Update the speed of each column in case that a body has touched it. Columns are on a uniform grid, so only
+	 * the ones between the min and max x of the submerged parts are visited, once per body.
+	 * @param submersion Parts of the body that are in contact with water
+	 */
+	private void updateColumns(BodySubmersion submersion) {
+
+		HeightField field = getHeightField();
+		int first = field.firstColumn(submersion.getMinX());
+		int last = field.lastColumn(submersion.getMaxX());
+		BodyState state = submersion.state;
+		Body body = state.body;
+		float bodyVelocity = state.velocityY;
+		float[] vertices = submersion.vertices;
+
+		// a falling body touches the columns whose height is above the lower side of the intersection
+		if (bodyVelocity < 0 && first <= last) {
+			for (int k = 0; k < submersion.polygons; k++) {
+				int start = submersion.starts[k];
+				int count = submersion.counts[k];
+				for (int j = 0; j < count; j++) {
+					int next = (j + 1) % count;
+					float x1 = vertices[start + j * 2], y1 = vertices[start + j * 2 + 1];
+					float x2 = vertices[start + next * 2], y2 = vertices[start + next * 2 + 1];
+					if (x1 == x2)
+						continue;
+
+					int from = Math.max(first, field.firstColumn(Math.min(x1, x2)));
+					int to = Math.min(last, field.lastColumn(Math.max(x1, x2)));
+					float slope = (y2 - y1) / (x2 - x1);
+					for (int i = from; i <= to; i++) {
+						if (field.bodies[i] == null && y1 + (field.x[i] - x1) * slope < field.heights[i]) {
+							field.bodies[i] = body;
+							setSpeed(i, bodyVelocity * 3 / 100);
+							touchedFrames[i] = frame;
+							touchedColumns.add(i);
 							if (splashParticles)
-								this.createSplashParticles(column);
+								this.createSplashParticles(i);
 						}
 					}
 				}
-			} else if (body == column.getActualBody()) {
-				column.setActualBody(null);
 			}
+		}
 
-			if (body.getPosition().y < column.y() || column.getActualBody() != null && column.getActualBody().getPosition().y < column.y())
-				column.setActualBody(null);
+		// mark the columns that this body still touches
+		for (int i = first; i <= last; i++) {
+			if (field.bodies[i] == body)
+				touchedFrames[i] = frame;
 		}
 	}
 
 	/**
-	 * Update the position of each column with respect to the speed that has been applied
+	 * Releases the columns whose body has not touched them in this update or has gone under the water. Only the
+	 * columns with a body are visited, once per update.
 	 */
-	private void updateWaves() {
-		for (int i = 0; i < columns.size(); i++) {
-			columns.get(i).update(dampening, tension);
-		}
-
-		float[] lDeltas = new float[columns.size()];
-		float[] rDeltas = new float[columns.size()];
-
-		// do some passes where columns pull on their neighbours
-		for (int j = 0; j < 8; j++) {
-			for (int i = 0; i < columns.size(); i++) {
-				if (i > 0) {
-					lDeltas[i] = this.spread * (columns.get(i).getHeight() - columns.get(i - 1).getHeight());
-					columns.get(i - 1).setSpeed(columns.get(i - 1).getSpeed() + lDeltas[i]);
-				}
-				if (i < columns.size() - 1) {
-					rDeltas[i] = this.spread * (columns.get(i).getHeight() - columns.get(i + 1).getHeight());
-					columns.get(i + 1).setSpeed(columns.get(i + 1).getSpeed() + rDeltas[i]);
-				}
-			}
-
-			for (int i = 0; i < columns.size(); i++) {
-				if (i > 0)
-					columns.get(i - 1).setHeight(columns.get(i - 1).getHeight() + lDeltas[i]);
-				if (i < columns.size() - 1)
-					columns.get(i + 1).setHeight(columns.get(i + 1).getHeight() + rDeltas[i]);
+	private void releaseColumns() {
+		HeightField field = getHeightField();
+		for (int k = touchedColumns.size - 1; k >= 0; k--) {
+			int i = touchedColumns.get(k);
+			Body actualBody = field.bodies[i];
+			// a body that touched the column in this update is already in the cache
+			if (actualBody == null || touchedFrames[i] != frame || bodyStates.get(actualBody).y < field.y[i]) {
+				field.bodies[i] = null;
+				touchedColumns.removeIndex(k);
 			}
 		}
-
 	}
 
 	/**
-	 * Create a new splash particle in the given position with a specific velocity
-	 * @param pos Init position of the splash particle
-	 * @param velocity Init velocity of the splash particle
+	 * Update the position of each column with respect to the speed that has been applied. Only the columns that
+	 * are moving are updated, and nothing is done while the water is calm.
+	 * @param delta Duration of the step
 	 */
-	private void createParticle(Vector2 pos, Vector2 velocity, float radius) {
-		Particle particle = new Particle(pos, velocity, radius);
-		particle.setInitX(pos.x);
-		particle.setTime(0);
-		particle.setRadius(radius);
-		particles.add(particle);
+	private void updateWaves(float delta) {
+		waveSolver.step(heightField, dampening, tension, spread, delta);
 	}
 
 	/**
-	 * Creates particles in random position and velocity near to the body
-	 * @param column We use it to know the speed of the body that is touching it
+	 * Creates particles in random position and velocity near to the body. StrictMath gives the same directions on
+	 * every platform.
+	 * @param column Index of the column. We use it to know the speed of the body that is touching it
 	 */
-	private void createSplashParticles(WaterColumn column) {
-		float y = column.getHeight();
-		float bodyVel = Math.abs(column.getActualBody().getLinearVelocity().y);
+	private void createSplashParticles(int column) {
+		HeightField heightField = getHeightField();
+		BodyState actualBody = bodyStates.get(heightField.getActualBody(column));
+		float y = heightField.getHeight(column);
+		float bodyVel = Math.abs(actualBody.velocityY);
 
 		if (Math.abs(bodyVel) > 3f) {
+			float bodyX = actualBody.x;
+			float maxLength = heightField.getTargetHeight(column);
 			for (int i = 0; i < bodyVel / 8; i++) {
-				Vector2 pos = new Vector2(column.x(), y).add(IntersectionUtils.getRandomVector(column.getTargetHeight()));
-
-				Vector2 vel = new Vector2();
-				if (rand.nextInt(4) == 0)
-					vel = new Vector2(0, bodyVel / 2 + rand.nextFloat() * bodyVel / 2);
-				else if (pos.x < column.getActualBody().getPosition().x)
-					vel = new Vector2(-bodyVel / 5 + rand.nextFloat() * bodyVel / 5,
-							bodyVel / 3 + rand.nextFloat() * bodyVel / 3);
-				else
-					vel = new Vector2(bodyVel / 5 + rand.nextFloat() * bodyVel / 5,
-							bodyVel / 3 + rand.nextFloat() * bodyVel / 3);
+				// random offset from the column top
+				double angle = random.nextDouble() * 2 * Math.PI - Math.PI;
+				float length = (float) (random.nextDouble() * maxLength);
+				float x = heightField.getX(column) + (float) StrictMath.cos(angle) * length;
+				float py = y + (float) StrictMath.sin(angle) * length;
+
+				float vx, vy;
+				if (random.nextInt(4) == 0) {
+					vx = 0;
+					vy = bodyVel / 2 + random.nextFloat() * bodyVel / 2;
+				} else if (x < bodyX) {
+					vx = -bodyVel / 5 + random.nextFloat() * bodyVel / 5;
+					vy = bodyVel / 3 + random.nextFloat() * bodyVel / 3;
+				} else {
+					vx = bodyVel / 5 + random.nextFloat() * bodyVel / 5;
+					vy = bodyVel / 3 + random.nextFloat() * bodyVel / 3;
+				}
 				
-				float radius = new Random().nextFloat() * (0.05f - 0.025f) + 0.025f;
+				float radius = random.nextFloat() * (0.05f - 0.025f) + 0.025f;
 
-				this.createParticle(pos, vel, radius);
+				if (addParticle(x, py, vx, vy, radius) && stats != null)
+					stats.allocationsAvoided++;
 			}
 		}
 	}
 
 	/**
-	 * Draws the waves and splash particles if they exist
-	 * @param camera Camera used in the current stage
+	 * Sets the speed of a column touched by a body. With a worker the speed is handed over to it.
 	 */
-	public void draw(Camera camera) {
-
-		if (hasWaves()) {
-			
-			updateWaves();
-
-			polyBatch.setProjectionMatrix(camera.combined);
-			shapeBatch.setProjectionMatrix(camera.combined);
+	private void setSpeed(int column, float speed) {
+		if (worker != null) {
+			if (!worker.splashes.offerSpeed(column, speed) && stats != null)
+				stats.splashesDropped++;
+		} else {
+			heightField.speeds[column] = speed;
+			heightField.wake(column);
+		}
+	}
 
-			// draw columns water
-			polyBatch.begin();
-			for (int i = 0; i < columns.size() - 1; i++) {
-				
-				WaterColumn c1 = columns.get(i);
-				WaterColumn c2 = columns.get(i + 1);
-				
-				if(!debugMode){
-					float[] vertices = new float[] { c1.x(), c1.y(), c1.x(), c1.getHeight(), c2.x(), c2.getHeight(), c2.x(),
-							c2.y() };
-					PolygonSprite sprite = new PolygonSprite(new PolygonRegion(textureWater, vertices,
-							new EarClippingTriangulator().computeTriangles(vertices).toArray()));
-					sprite.draw(polyBatch, Math.min(1, Math.max(0.95f, c1.getHeight() / c1.getTargetHeight()))); // remove transparency for waves here if you don't want it
-				}
-				else {
-					shapeBatch.begin(ShapeType.Line);
-					shapeBatch.line(new Vector2(c1.x(), c1.y()), new Vector2(c1.x(), c1.getHeight()));
-					shapeBatch.end();
-				}
-			}
-			polyBatch.end();
-			
-			// draw splash particles
-			if (hasSplashParticles()) {
-				if(!debugMode){
-					spriteBatch.setProjectionMatrix(camera.combined);
-					spriteBatch.begin();
-					for (Particle p : particles) {
-						spriteBatch.draw(textureDrop, p.getPosition().x, p.getPosition().y, p.getRadius()*2, p.getRadius()*2);
-					}
-					spriteBatch.end();
-				}
-				else {
-					shapeBatch.setProjectionMatrix(camera.combined);
-					shapeBatch.begin(ShapeType.Line);
-					for (Particle p : particles) {
-						shapeBatch.rect(p.getPosition().x, p.getPosition().y, p.getRadius()*2, p.getRadius()*2);
-					}
-					shapeBatch.end();
-				}
-			}
-			
+	/**
+	 * Creates a splash particle. With a worker the particle is handed over to it.
+	 * @return False if the particle was discarded
+	 */
+	private boolean addParticle(float x, float y, float velocityX, float velocityY, float radius) {
+		if (worker != null) {
+			if (worker.splashes.offerParticle(x, y, velocityX, velocityY, radius))
+				return true;
+			if (stats != null)
+				stats.splashesDropped++;
+			return false;
 		}
+		return particles.add(x, y, velocityX, velocityY, radius) >= 0;
 	}
 
 	@Override
 	public void dispose() {
-		if(spriteBatch != null) spriteBatch.dispose();
-		if(polyBatch != null) polyBatch.dispose();
-		if(shapeBatch != null) shapeBatch.dispose(); 
-		if(textureDrop != null) textureDrop.dispose();
-		if(textureDrop != null) textureWater.getTexture().dispose();
+		stopWorker();
 		if(columns != null) columns.clear();
+		touchedColumns.clear();
 		if(particles != null) particles.clear();
-		if(fixturePairs != null) fixturePairs.clear();
+		contacts.clear();
+		circlePolygons.clear();
+		polygonVertices.clear();
+		if(!sharedBodyStates) bodyStates.clear();
 		if(body != null) body.getWorld().destroyBody(body);
 	}
 
+	public Body getBody() {
+		return body;
+	}
+
+	/**
+	 * @return Shape of the water and its convex pieces, or null before creating the body
+	 */
+	public WaterVolume getVolume() {
+		return volume;
+	}
+
 	public List<WaterColumn> getColumns() {
 		return columns;
 	}
 
+	/**
+	 * Replaces the columns of the waves. The state of the given columns is copied to a new height field and they
+	 * become views of it.
+	 * @param columns New columns
+	 */
 	public void setColumns(List<WaterColumn> columns) {
+		stopWorker();
+		HeightField field = new HeightField(columns.size());
+		for (int i = 0; i < columns.size(); i++) {
+			WaterColumn column = columns.get(i);
+			field.set(i, column.x(), column.y(), column.getTargetHeight(), column.getHeight(), column.getSpeed());
+			field.setActualBody(i, column.getActualBody());
+			column.bind(field, i);
+		}
+		field.setGridFromColumns();
+		surface = -Float.MAX_VALUE;
+		for (int i = 0; i < field.size(); i++) {
+			surface = Math.max(surface, field.getTargetHeight(i));
+		}
+		field.setParallelism(wavesPool, parallelThreshold, HeightField.DEFAULT_TILE_SIZE);
+		this.heightField = field;
 		this.columns = columns;
+		this.touchedColumns.clear();
+		this.touchedFrames = new int[field.size()];
+		for (int i = 0; i < field.size(); i++) {
+			if (field.getActualBody(i) != null)
+				touchedColumns.add(i);
+		}
+		updateFocus();
+		startWorker();
+	}
+
+	/**
+	 * @return State of the waves. With an executor (see {@link #setAsyncSimulation(Executor)}) it is a copy of the
+	 *         last completed step, and changes made to it are lost: change the columns instead
+	 */
+	public HeightField getHeightField() {
+		return worker != null ? worker.displayField : heightField;
+	}
+
+	/**
+	 * Gives the simulated height field, to change it on this thread. With an executor it waits for the running job;
+	 * call {@link #endEdit()} after the changes, so they are copied to the state returned by the getters. The
+	 * splash particles can be changed too.
+	 * @return Simulated height field, or null if there are no waves
+	 */
+	HeightField beginEdit() {
+		return worker != null ? worker.edit() : heightField;
+	}
+
+	/**
+	 * Copies the changes made after {@link #beginEdit()} to the state returned by the getters
+	 */
+	void endEdit() {
+		if (worker != null)
+			worker.publishEdits();
 	}
 
 	public float getTension() {
@@ -485,6 +723,17 @@ public class Water implements Disposable {
 		return spread;
 	}
 
+	/**
+	 * @return True if the waves are at rest and there are no splash particles, so {@link #step(float)} does nothing
+	 */
+	public boolean isSleeping() {
+		if (worker != null && (worker.isRunning() || !worker.splashes.isEmpty()))
+			return false;
+		HeightField heightField = getHeightField();
+		ParticleSystem particles = getParticles();
+		return (!waves || heightField == null || heightField.isSleeping()) && (particles == null || particles.isEmpty());
+	}
+
 	public boolean hasWaves() {
 		return waves;
 	}
@@ -493,21 +742,84 @@ public class Water implements Disposable {
 		return splashParticles;
 	}
 
-	public List<Particle> getParticles() {
-		return particles;
+	/**
+	 * @return Splash particles. With an executor (see {@link #setAsyncSimulation(Executor)}) it is a copy of the
+	 *         last completed step
+	 */
+	public ParticleSystem getParticles() {
+		return worker != null ? worker.displayParticles : particles;
+	}
+
+	/**
+	 * Changes the max number of splash particles alive at the same time
+	 * @param maxParticles Max number of particles
+	 * @param evictionPolicy What to do when a splash creates more particles than allowed
+	 */
+	public void setMaxParticles(int maxParticles, ParticleSystem.EvictionPolicy evictionPolicy) {
+		if (worker != null)
+			worker.finish();
+		if (particles != null) {
+			particles.setCapacity(maxParticles);
+			particles.setEvictionPolicy(evictionPolicy);
+		}
+	}
+
+	/**
+	 * Must be called when a fixture of a dynamic body starts touching the water. {@link WaterContactListener} does it.
+	 * @param waterFixture Fixture of this water object
+	 * @param bodyFixture Fixture of the other body
+	 */
+	public void beginContact(Fixture waterFixture, Fixture bodyFixture) {
+		contacts.add(waterFixture, bodyFixture);
+		// a body needs at most one submersion and a fixture one vertex entry per contact, created here so update()
+		// doesn't allocate
+		if (submersions.size + freeSubmersions.size < contacts.size())
+			freeSubmersions.add(new BodySubmersion());
+		polygonVertices.reserve(contacts.size());
+	}
+
+	/**
+	 * Must be called when a fixture stops touching the water. {@link WaterContactListener} does it. Box2D also ends
+	 * the contacts of the fixtures that are destroyed.
+	 * @param waterFixture Fixture of this water object
+	 * @param bodyFixture Fixture of the other body
+	 */
+	public void endContact(Fixture waterFixture, Fixture bodyFixture) {
+		if (contacts.remove(waterFixture, bodyFixture)) {
+			circlePolygons.remove(bodyFixture);
+			polygonVertices.remove(bodyFixture);
+		}
+	}
+
+	/**
+	 * @return Fixtures in contact with this water object
+	 */
+	public ContactRegistry getContacts() {
+		return contacts;
 	}
 
-	public void setParticles(List<Particle> particles) {
-		this.particles = particles;
+	/**
+	 * @return Polygons used for the circle fixtures in contact. Fixtures are removed when their contact ends
+	 */
+	public CirclePolygonCache getCirclePolygons() {
+		return circlePolygons;
 	}
 
-	public Set<Pair<Fixture, Fixture>> getFixturePairs() {
-		return fixturePairs;
+	public BodyStateCache getBodyStates() {
+		return bodyStates;
 	}
 
-	public void setFixturePairs(Set<Pair<Fixture, Fixture>> fixturePairs) {
-		this.fixturePairs = fixturePairs;
+	/**
+	 * Shares the body states with other water objects, so a body that touches several of them gets one force and
+	 * one torque per step. Call {@link BodyStateCache#begin()} before updating the water objects that share it and
+	 * {@link BodyStateCache#flush()} after all of them.
+	 * @param bodyStates Shared cache, or null to go back to a cache owned by this object
+	 */
+	public void setBodyStates(BodyStateCache bodyStates) {
+		this.sharedBodyStates = bodyStates != null;
+		this.bodyStates = bodyStates != null ? bodyStates : new BodyStateCache();
 	}
+
 	
 	public float getDensity() {
 		return density;
@@ -521,24 +833,285 @@ public class Water implements Disposable {
 		return columnSparation;
 	}
 
+	/**
+	 * Changes the distance between the columns of the waves. Fewer columns are cheaper to simulate and draw, but
+	 * the waves are less smooth. Only used when the body is created, by {@link #createBody(World, float, float,
+	 * float, float)} and {@link #createBody(World, float, float, float[])}.
+	 * @param columnSparation Distance between two columns, in meters
+	 */
+	public void setColumnSparation(float columnSparation) {
+		if (columnSparation <= 0)
+			throw new IllegalArgumentException("columnSparation must be greater than 0: " + columnSparation);
+		this.columnSparation = columnSparation;
+	}
+
+	/**
+	 * Sets the part of the water that is seen, usually the bounds of the camera on the x-axis. Only the waves in
+	 * it, plus a margin at both sides, are simulated. The columns out of it are frozen and, when they are seen
+	 * again, they are set to the state they would have reached settling on their own. A water object that is not
+	 * seen doesn't simulate its waves at all. Call it whenever the camera moves.
+	 * @param left Min x that is seen
+	 * @param right Max x that is seen
+	 */
+	public void setView(float left, float right) {
+		this.hasView = true;
+		this.viewLeft = left;
+		this.viewRight = right;
+		updateFocus();
+	}
+
+	/**
+	 * Simulates all the waves again, wherever the camera is
+	 */
+	public void clearView() {
+		this.hasView = false;
+		updateFocus();
+	}
+
+	/**
+	 * @return Generator used for the splash particles
+	 */
+	public RandomXS128 getRandom() {
+		return random;
+	}
+
+	/**
+	 * Replaces the generator used for the splash particles, for example to share one stream between several water
+	 * objects
+	 * @param random Generator
+	 */
+	public void setRandom(RandomXS128 random) {
+		this.random = random;
+	}
+
+	/**
+	 * Restarts the generator of the splash particles. Two water objects with the same seed create the same
+	 * particles for the same splashes.
+	 * @param seed Seed of the generator
+	 */
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
+	public boolean isDeterministic() {
+		return deterministic;
+	}
+
+	/**
+	 * In deterministic mode the same calls with the same bodies, the same seed and the same deltas give a
+	 * bit-identical state of the waves and particles, for lockstep games and replays. The view is ignored, since it
+	 * changes between players, so all the waves are simulated.
+	 * @param deterministic True to enable the deterministic mode
+	 */
+	public void setDeterministic(boolean deterministic) {
+		this.deterministic = deterministic;
+		updateFocus();
+	}
+
+	public boolean hasView() {
+		return hasView;
+	}
+
+	public float getViewMargin() {
+		return viewMargin;
+	}
+
+	/**
+	 * Sets how far from the view the waves are still simulated, so the ones that come into it from the sides
+	 * are already moving
+	 * @param viewMargin Distance on the x-axis, in meters
+	 */
+	public void setViewMargin(float viewMargin) {
+		this.viewMargin = viewMargin;
+		updateFocus();
+	}
+
+	/**
+	 * Limits the steps of the height field to the columns in the view
+	 */
+	private void updateFocus() {
+		HeightField field = heightField;
+		if (field == null)
+			return;
+		int from = 0, to = field.size();
+		if (hasView && !deterministic) {
+			from = field.firstColumn(viewLeft - viewMargin);
+			to = field.lastColumn(viewRight + viewMargin) + 1;
+		}
+		// the worker owns the field, it sets the focus before its next job
+		if (worker != null) {
+			worker.focusFrom = from;
+			worker.focusTo = to;
+		} else {
+			field.setFocus(from, to);
+		}
+	}
+
+	/**
+	 * Runs the waves and splash particles on another thread. {@link #step(float)} starts a job on the executor
+	 * and returns at once; if the previous job has not finished, its time is given to the next one. The height
+	 * field and particles returned by the getters are a copy of the last completed job, so they can be drawn while
+	 * the next one runs, and the splashes found by {@link #update()} are handed over to the worker without locks.
+	 * The columns returned by {@link #getColumns()} also read the copy. The setters of the waves and particles,
+	 * of the columns and {@link WaterStateSerializer#read(java.nio.ByteBuffer, Water)} wait for the running job
+	 * before they change anything, and change the simulated state and the copy. In deterministic mode every step
+	 * waits for its job, so the next update reads the same state as without a worker and the result only depends
+	 * on the calls; the simulation runs on the executor but never overlaps the physics. Splashes that don't fit in
+	 * the queue of the worker are dropped and counted in {@link WaterStats#getSplashesDropped()}. The times of the
+	 * waves and particles in the stats are measured on the worker and added to them when its job is published.
+	 * @param executor Executor where the jobs run, or null to simulate on the thread that calls step
+	 */
+	public void setAsyncSimulation(Executor executor) {
+		stopWorker();
+		this.simulationExecutor = executor;
+		startWorker();
+	}
+
+	public Executor getAsyncSimulation() {
+		return simulationExecutor;
+	}
+
+	/**
+	 * Creates the worker of the current height field if there is an executor
+	 */
+	private void startWorker() {
+		if (simulationExecutor == null || heightField == null)
+			return;
+		worker = new WaveWorker(this, heightField, particles, simulationExecutor);
+		updateFocus();
+		if (columns != null) {
+			for (int i = 0; i < columns.size(); i++) {
+				columns.get(i).bind(worker.displayField, i, worker);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the worker and gives the state back to this object
+	 */
+	private void stopWorker() {
+		if (worker == null)
+			return;
+		WaveWorker worker = this.worker;
+		this.worker = null;
+		worker.finish();
+		// the columns touched by the bodies were kept in the copy
+		System.arraycopy(worker.displayField.bodies, 0, heightField.bodies, 0, heightField.size());
+		alpha = worker.displayAlpha;
+		if (columns != null) {
+			for (int i = 0; i < columns.size(); i++) {
+				columns.get(i).bind(heightField, i);
+			}
+		}
+		updateFocus();
+	}
+
 	public void setTension(float tension) {
+		if (worker != null)
+			worker.finish();
 		this.tension = tension;
 	}
 
 	public void setDampening(float dampening) {
+		if (worker != null)
+			worker.finish();
 		this.dampening = dampening;
 	}
 
 	public void setSpread(float spread) {
+		if (worker != null)
+			worker.finish();
 		this.spread = spread;
 	}
 
-	public boolean isDebugMode() {
-		return debugMode;
+	/**
+	 * Allows to propagate the waves on several threads. Only worth it for very wide bodies: the columns are
+	 * split in tiles of {@link HeightField#DEFAULT_TILE_SIZE} columns, and the result is the same as the
+	 * single-threaded one.
+	 * @param pool Pool where the waves are propagated, or null to always use the calling thread
+	 * @param threshold Min number of columns to use the pool
+	 */
+	public void setParallelWaves(ForkJoinPool pool, int threshold) {
+		if (worker != null)
+			worker.finish();
+		this.wavesPool = pool;
+		this.parallelThreshold = threshold;
+		if (heightField != null)
+			heightField.setParallelism(pool, threshold, HeightField.DEFAULT_TILE_SIZE);
+	}
+
+	public WaterStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Measures the time spent in every part of the simulation and counts the work done. Nothing is measured while
+	 * there are no stats. The stats can be shared by several water objects and renderers; call
+	 * {@link WaterStats#endFrame()} once per frame.
+	 * @param stats Stats where the measures are added, or null to stop measuring
+	 */
+	public void setStats(WaterStats stats) {
+		if (worker != null)
+			worker.finish();
+		this.stats = stats;
+	}
+
+	public WaveSolver getWaveSolver() {
+		return waveSolver;
+	}
+
+	/**
+	 * Changes how the waves are integrated. The default {@link ExplicitWaveSolver} is tuned for steps of 1/60 s;
+	 * use an {@link ImplicitWaveSolver} to run the waves with longer steps (see {@link #setTimeStep(float)}).
+	 * @param waveSolver Solver of the waves
+	 */
+	public void setWaveSolver(WaveSolver waveSolver) {
+		if (worker != null)
+			worker.finish();
+		this.waveSolver = waveSolver;
+	}
+
+	public float getTimeStep() {
+		return timeStep;
+	}
+
+	/**
+	 * Changes the duration of every simulation step. The explicit wave solver is tuned for 1/60 s steps, so other
+	 * values change the speed of its waves; the {@link ImplicitWaveSolver} takes the duration into account.
+	 * @param timeStep Duration of a step, in seconds
+	 */
+	public void setTimeStep(float timeStep) {
+		if (worker != null)
+			worker.finish();
+		this.timeStep = timeStep;
 	}
 
-	public void setDebugMode(boolean debugMode) {
-		this.debugMode = debugMode;
+	public int getMaxSubSteps() {
+		return maxSubSteps;
+	}
+
+	/**
+	 * Sets the max number of steps run by one call to {@link #step(float)}. Limits the simulation cost after a long frame.
+	 * @param maxSubSteps Max number of steps
+	 */
+	public void setMaxSubSteps(int maxSubSteps) {
+		if (worker != null)
+			worker.finish();
+		this.maxSubSteps = maxSubSteps;
+	}
+
+	/**
+	 * @return Fraction of a step between the last simulated state and the next one, used to interpolate the drawn state
+	 */
+	public float getAlpha() {
+		return worker != null ? worker.displayAlpha : alpha;
+	}
+
+	/**
+	 * @return Fraction of a step of the simulated state, that may be ahead of the drawn one on a worker
+	 */
+	float getSimulationAlpha() {
+		return alpha;
 	}
 
 }
@@ -3,18 +3,19 @@ package com.dream.box2d.water;
 import com.badlogic.gdx.physics.box2d.Body;
 
 /**
- * Allows to create a column represented by a line that will serve to simulate the height of a wave
+ * Allows to create a column represented by a line that will serve to simulate the height of a wave.
+ * The state is stored in a {@link HeightField}, so a column is just a view of one of its indexes. When the waves
+ * run on a worker thread the column reads the copy of the last completed step, and its setters wait for the
+ * running job and change both the simulated state and the copy.
  */
 public class WaterColumn {
 
-	private float targetHeight;
-	private float height;
-	private float speed;
-	private float x, y;
-	private Body actualBody; // Body in contact with this column
-	
+	private HeightField field;
+	private int index;
+	private WaveWorker worker; // owner of the simulated state when the field is a copy, or null
+
 	/**
-	 * Main constructor. 
+	 * Main constructor. The column will have its own height field.
 	 * @param x Position on the x-axis of the lower point of the column
 	 * @param y Position on the y-axis of the lower point of the column
 	 * @param targetHeight Default height of the column
@@ -22,70 +23,115 @@ public class WaterColumn {
 	 * @param speed Speed at which it is currently oscillating
 	 */
 	public WaterColumn(float x, float y, float targetHeight, float height, float speed) {
-		this.targetHeight = targetHeight;
-		this.height = height;
-		this.speed = speed;
-		this.x(x);
-		this.y(y);
+		this.field = new HeightField(1);
+		this.field.set(0, x, y, targetHeight, height, speed);
+	}
+
+	/**
+	 * Creates a view of a column of an existing height field
+	 * @param field Height field that stores the column
+	 * @param index Index of the column in the height field
+	 */
+	public WaterColumn(HeightField field, int index) {
+		bind(field, index);
 	}
-	
+
+	/**
+	 * Makes this column a view of another height field index
+	 * @param field Height field that stores the column
+	 * @param index Index of the column in the height field
+	 */
+	void bind(HeightField field, int index) {
+		bind(field, index, null);
+	}
+
+	/**
+	 * Makes this column a view of the copy of a height field simulated by a worker
+	 * @param field Height field that stores the column
+	 * @param index Index of the column in the height field
+	 * @param worker Worker that simulates the height field, or null if the field is not a copy
+	 */
+	void bind(HeightField field, int index, WaveWorker worker) {
+		this.field = field;
+		this.index = index;
+		this.worker = worker;
+	}
+
 	/**
 	 * Updates the current height of the column with respect to its speed
 	 * @param dampening Dampening value
 	 * @param tension Tension value
 	 */
 	public void update(float dampening, float tension){
-		float x = targetHeight - height;
-		speed += tension * x - speed * dampening;
-		height += speed;
+		if (worker != null)
+			worker.edit().update(index, dampening, tension);
+		field.update(index, dampening, tension);
 	}
-	
+
+	public HeightField getField() {
+		return field;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
 	public float getTargetHeight() {
-		return targetHeight;
+		return field.getTargetHeight(index);
 	}
-	
+
 	public void setTargetHeight(float targetHeight) {
-		this.targetHeight = targetHeight;
+		if (worker != null)
+			worker.edit().setTargetHeight(index, targetHeight);
+		field.setTargetHeight(index, targetHeight);
 	}
-	
+
 	public float getHeight() {
-		return height;
+		return field.getHeight(index);
 	}
-	
+
 	public void setHeight(float height) {
-		this.height = height;
+		if (worker != null)
+			worker.edit().setHeight(index, height);
+		field.setHeight(index, height);
 	}
-	
+
 	public float getSpeed() {
-		return speed;
+		return field.getSpeed(index);
 	}
-	
+
 	public void setSpeed(float speed) {
-		this.speed = speed;
+		if (worker != null)
+			worker.edit().setSpeed(index, speed);
+		field.setSpeed(index, speed);
 	}
-	
+
 	public float x() {
-		return x;
+		return field.getX(index);
 	}
-	
+
 	public void x(float x) {
-		this.x = x;
+		if (worker != null)
+			worker.edit().setX(index, x);
+		field.setX(index, x);
 	}
-	
+
 	public float y() {
-		return y;
+		return field.getY(index);
 	}
-	
+
 	public void y(float y) {
-		this.y = y;
+		if (worker != null)
+			worker.edit().setY(index, y);
+		field.setY(index, y);
 	}
 
 	public Body getActualBody() {
-		return actualBody;
+		return field.getActualBody(index);
 	}
 
 	public void setActualBody(Body actualBody) {
-		this.actualBody = actualBody;
+		field.setActualBody(index, actualBody);
 	}
-	
+
 }
@@ -0,0 +1,124 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.physics.box2d.BodyDef.BodyType;
+import com.badlogic.gdx.physics.box2d.Contact;
+import com.badlogic.gdx.physics.box2d.ContactImpulse;
+import com.badlogic.gdx.physics.box2d.ContactListener;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.Manifold;
+
+/**
+ * Contact listener that tells every water object which fixtures of dynamic bodies it touches. A world only has one
+ * contact listener, so the one of the game can be given as delegate and it receives every event after the water.
+ * <p>
+ * By default the water objects are changed from inside the world step. With a {@link ContactEventQueue} the events
+ * are only recorded, and the queue applies them when it is drained after the step.
+ */
+public class WaterContactListener implements ContactListener {
+
+	private ContactListener delegate;
+	private ContactEventQueue queue;
+
+	/**
+	 * Main constructor. Only the water objects receive the events.
+	 */
+	public WaterContactListener() {
+		this(null);
+	}
+
+	/**
+	 * Constructor that chains the listener of the game
+	 * @param delegate Listener that receives every event after the water, or null
+	 */
+	public WaterContactListener(ContactListener delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Constructor that records the events in a queue
+	 * @param queue Queue where the events of the water are added, or null to apply them during the step
+	 * @param delegate Listener that receives every event after the water, or null
+	 */
+	public WaterContactListener(ContactEventQueue queue, ContactListener delegate) {
+		this.queue = queue;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void beginContact(Contact contact) {
+		Fixture fixtureA = contact.getFixtureA();
+		Fixture fixtureB = contact.getFixtureB();
+
+		if (fixtureA.getBody().getUserData() instanceof Water && fixtureB.getBody().getType() == BodyType.DynamicBody) {
+			begin((Water) fixtureA.getBody().getUserData(), fixtureA, fixtureB);
+		} else if (fixtureB.getBody().getUserData() instanceof Water && fixtureA.getBody().getType() == BodyType.DynamicBody) {
+			begin((Water) fixtureB.getBody().getUserData(), fixtureB, fixtureA);
+		}
+
+		if (delegate != null)
+			delegate.beginContact(contact);
+	}
+
+	@Override
+	public void endContact(Contact contact) {
+		Fixture fixtureA = contact.getFixtureA();
+		Fixture fixtureB = contact.getFixtureB();
+
+		// the type of the body may have changed since the contact began, the water ignores unknown pairs
+		if (fixtureA.getBody().getUserData() instanceof Water) {
+			end((Water) fixtureA.getBody().getUserData(), fixtureA, fixtureB);
+		} else if (fixtureB.getBody().getUserData() instanceof Water) {
+			end((Water) fixtureB.getBody().getUserData(), fixtureB, fixtureA);
+		}
+
+		if (delegate != null)
+			delegate.endContact(contact);
+	}
+
+	@Override
+	public void preSolve(Contact contact, Manifold oldManifold) {
+		if (delegate != null)
+			delegate.preSolve(contact, oldManifold);
+	}
+
+	@Override
+	public void postSolve(Contact contact, ContactImpulse impulse) {
+		if (delegate != null)
+			delegate.postSolve(contact, impulse);
+	}
+
+	private void begin(Water water, Fixture waterFixture, Fixture bodyFixture) {
+		if (queue != null)
+			queue.offer(water, waterFixture, bodyFixture, true);
+		else
+			water.beginContact(waterFixture, bodyFixture);
+	}
+
+	private void end(Water water, Fixture waterFixture, Fixture bodyFixture) {
+		if (queue != null)
+			queue.offer(water, waterFixture, bodyFixture, false);
+		else
+			water.endContact(waterFixture, bodyFixture);
+	}
+
+	public ContactListener getDelegate() {
+		return delegate;
+	}
+
+	public void setDelegate(ContactListener delegate) {
+		this.delegate = delegate;
+	}
+
+	public ContactEventQueue getQueue() {
+		return queue;
+	}
+
+	/**
+	 * Sets the queue where the events of the water are added. Drain the old one before changing it.
+	 * @param queue Queue, or null to apply the events during the step
+	 */
+	public void setQueue(ContactEventQueue queue) {
+		this.queue = queue;
+	}
+
+}
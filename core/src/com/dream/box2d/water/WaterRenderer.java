@@ -0,0 +1,207 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PolygonSpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer.ShapeType;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Draws the waves and splash particles of a water object. The water simulation does not need it, so it is only
+ * created where there is something to draw.
+ */
+public class WaterRenderer implements Disposable {
+
+	private final Water water;
+	private boolean debugMode;
+
+	SpriteBatch spriteBatch;
+	PolygonSpriteBatch polyBatch;
+	private int polyBatchSize; // max vertices of polyBatch
+	ShapeRenderer shapeBatch;
+	TextureRegion textureWater;
+	Texture textureDrop;
+
+	private SurfaceMesh surfaceMesh; // vertices used to draw the waves
+	private HeightField meshField; // height field used to create the surface mesh
+	private float viewLeft, viewRight, viewBottom, viewTop; // bounds of the camera in the last draw
+
+	/**
+	 * Main constructor. Loads the textures needed by the effects enabled in the water object.
+	 * @param water Water to draw
+	 */
+	public WaterRenderer(Water water) {
+		this.water = water;
+		this.setDebugMode(false);
+
+		if (water.hasWaves()) {
+			textureWater = new TextureRegion(new Texture(Gdx.files.internal("water.png")));
+		}
+
+		if (water.hasSplashParticles()) {
+			textureDrop = new Texture(Gdx.files.internal("drop.png"));
+			spriteBatch = new SpriteBatch();
+		}
+
+		shapeBatch = new ShapeRenderer();
+		shapeBatch.setColor(0, 0.5f, 1, 1);
+	}
+
+	/**
+	 * Creates the vertices used to draw the waves and a batch big enough to draw them with one call
+	 * @param heightField Height field of the water
+	 */
+	private void createSurfaceMesh(HeightField heightField) {
+		surfaceMesh = new SurfaceMesh(heightField.size());
+		surfaceMesh.setTextureRegion(textureWater.getU(), textureWater.getV(), textureWater.getU2(), textureWater.getV2(),
+				textureWater.getRegionWidth(), textureWater.getRegionHeight());
+		surfaceMesh.init(heightField);
+		meshField = heightField;
+
+		if (polyBatch == null || polyBatchSize < surfaceMesh.getMaxVertices()) {
+			if (polyBatch != null)
+				polyBatch.dispose();
+			polyBatchSize = Math.max(surfaceMesh.getMaxVertices(), 4);
+			polyBatch = new PolygonSpriteBatch(polyBatchSize);
+		}
+	}
+
+	/**
+	 * Limits the simulation of the waves to the part of the water seen by a camera (see
+	 * {@link Water#setView(float, float)}). Call it before {@link Water#step(float)}, after the camera is updated.
+	 * @param camera Camera used in the current stage
+	 */
+	public void updateView(Camera camera) {
+		findViewBounds(camera);
+		water.setView(viewLeft, viewRight);
+	}
+
+	/**
+	 * Finds the bounds of the part of the world seen by a camera
+	 * @param camera Camera whose frustum is up to date
+	 */
+	private void findViewBounds(Camera camera) {
+		Vector3[] points = camera.frustum.planePoints;
+		viewLeft = viewRight = points[0].x;
+		viewBottom = viewTop = points[0].y;
+		for (int i = 1; i < points.length; i++) {
+			viewLeft = Math.min(viewLeft, points[i].x);
+			viewRight = Math.max(viewRight, points[i].x);
+			viewBottom = Math.min(viewBottom, points[i].y);
+			viewTop = Math.max(viewTop, points[i].y);
+		}
+	}
+
+	/**
+	 * Draws the waves and splash particles if they exist. It only reads the state advanced by
+	 * {@link Water#step(float)}, interpolated between the last two steps. Only the columns and particles inside
+	 * the frustum of the camera are submitted.
+	 * @param camera Camera used in the current stage
+	 */
+	public void draw(Camera camera) {
+		WaterStats stats = water.getStats();
+		long time = stats != null ? System.nanoTime() : 0;
+
+		HeightField heightField = water.getHeightField();
+		if (water.hasWaves() && heightField != null) {
+
+			float alpha = water.getAlpha();
+			if (meshField != heightField)
+				createSurfaceMesh(heightField);
+
+			polyBatch.setProjectionMatrix(camera.combined);
+			shapeBatch.setProjectionMatrix(camera.combined);
+
+			// columns on the uniform grid that are seen, plus one at each side to close the quads at the borders
+			findViewBounds(camera);
+			int first = Math.max(0, heightField.firstColumn(viewLeft) - 1);
+			int last = Math.min(heightField.size() - 1, heightField.lastColumn(viewRight) + 1);
+
+			// draw columns water
+			if (first < last) {
+				if (!debugMode) {
+					surfaceMesh.update(heightField, alpha, first, last + 1);
+					polyBatch.begin();
+					float[] vertices = surfaceMesh.getVertices();
+					short[] triangles = surfaceMesh.getTriangles();
+					for (int start = first; start < last; start += surfaceMesh.getMaxQuads()) {
+						int count = Math.min(surfaceMesh.getMaxQuads(), last - start);
+						polyBatch.draw(textureWater.getTexture(), vertices, start * 2 * SurfaceMesh.VERTEX_SIZE,
+								(count + 1) * 2 * SurfaceMesh.VERTEX_SIZE, triangles, 0, count * 6);
+					}
+					polyBatch.end();
+				} else {
+					shapeBatch.begin(ShapeType.Line);
+					for (int i = first; i < last; i++) {
+						shapeBatch.line(heightField.getX(i), heightField.getY(i), heightField.getX(i), heightField.getInterpolatedHeight(i, alpha));
+					}
+					shapeBatch.end();
+				}
+			}
+
+			// draw splash particles
+			ParticleSystem particles = water.getParticles();
+			if (water.hasSplashParticles() && !particles.isEmpty()) {
+				if (!debugMode) {
+					spriteBatch.setProjectionMatrix(camera.combined);
+					spriteBatch.begin();
+					for (int i = 0; i < particles.size(); i++) {
+						float radius = particles.getRadius(i);
+						float x = particles.getInterpolatedX(i, alpha), y = particles.getInterpolatedY(i, alpha);
+						if (isVisible(x, y, radius * 2))
+							spriteBatch.draw(textureDrop, x, y, radius * 2, radius * 2);
+					}
+					spriteBatch.end();
+				} else {
+					shapeBatch.setProjectionMatrix(camera.combined);
+					shapeBatch.begin(ShapeType.Line);
+					for (int i = 0; i < particles.size(); i++) {
+						float radius = particles.getRadius(i);
+						float x = particles.getInterpolatedX(i, alpha), y = particles.getInterpolatedY(i, alpha);
+						if (isVisible(x, y, radius * 2))
+							shapeBatch.rect(x, y, radius * 2, radius * 2);
+					}
+					shapeBatch.end();
+				}
+			}
+
+		}
+
+		if (stats != null)
+			stats.drawNanos += System.nanoTime() - time;
+	}
+
+	/**
+	 * @return True if a square with the given lower left corner and size overlaps the view
+	 */
+	private boolean isVisible(float x, float y, float size) {
+		return x + size >= viewLeft && x <= viewRight && y + size >= viewBottom && y <= viewTop;
+	}
+
+	@Override
+	public void dispose() {
+		if(spriteBatch != null) spriteBatch.dispose();
+		if(polyBatch != null) polyBatch.dispose();
+		if(shapeBatch != null) shapeBatch.dispose();
+		if(textureDrop != null) textureDrop.dispose();
+		if(textureWater != null) textureWater.getTexture().dispose();
+	}
+
+	public Water getWater() {
+		return water;
+	}
+
+	public boolean isDebugMode() {
+		return debugMode;
+	}
+
+	public void setDebugMode(boolean debugMode) {
+		this.debugMode = debugMode;
+	}
+
+}
@@ -0,0 +1,337 @@
+package com.dream.box2d.water;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Writes the state of the waves, and optionally of the splash particles, of a water object to a byte buffer and
+ * applies it to another one, to replicate water over the network. Heights are stored as the distance to the target
+ * height and speeds as they are, both quantized to integers. A snapshot can be a key frame, with the values of
+ * every column, or a delta against the previous snapshot of the same serializer. Calm runs of columns, whose value
+ * is zero, take a single run length, and the rest are zigzag variable-length integers, so a calm lake takes a few
+ * bytes. Only the columns that moved since the last snapshot are visited.
+ * <p>
+ * A serializer keeps the last snapshot it wrote or read, so use one per water object and stream, with the same
+ * precisions on both sides. Deltas can only be read right after the snapshot they are based on; send a key frame
+ * when a snapshot is lost. The water that reads the snapshots should not step its waves, or its columns drift from
+ * the ones of the writer until the next key frame.
+ */
+public class WaterStateSerializer {
+
+	public static final float DEFAULT_HEIGHT_PRECISION = 0.001f; // 1 mm
+	public static final float DEFAULT_SPEED_PRECISION = 0.0001f; // speeds are in meters per step of 1/60 s
+
+	private static final float VELOCITY_PRECISION = 0.01f; // velocity of the particles, in meters per second
+	private static final float TIME_PRECISION = 0.001f;
+
+	private static final int DELTA = 1;
+	private static final int PARTICLES = 2;
+
+	private final float heightPrecision;
+	private final float speedPrecision;
+	private boolean particles = true;
+
+	// last snapshot written or read, quantized
+	private int[] baseHeights = new int[0];
+	private int[] baseSpeeds = new int[0];
+	private int baseStart; // range of the columns that are not zero in the last snapshot
+	private int baseEnd;
+	private int sequence; // number of the last snapshot
+	private boolean hasBase;
+
+	// values of the snapshot being written, the absolute ones in key frames and the differences in deltas
+	private int[] heightValues = new int[0];
+	private int[] speedValues = new int[0];
+
+	/**
+	 * Main constructor. Uses {@link #DEFAULT_HEIGHT_PRECISION} and {@link #DEFAULT_SPEED_PRECISION}.
+	 */
+	public WaterStateSerializer() {
+		this(DEFAULT_HEIGHT_PRECISION, DEFAULT_SPEED_PRECISION);
+	}
+
+	/**
+	 * Constructor that allows to specify the precision of the values. Both sides of a stream must use the same.
+	 * @param heightPrecision Step of the quantized heights and positions, in meters
+	 * @param speedPrecision Step of the quantized speeds of the columns
+	 */
+	public WaterStateSerializer(float heightPrecision, float speedPrecision) {
+		if (heightPrecision <= 0 || speedPrecision <= 0)
+			throw new IllegalArgumentException("Precisions must be greater than 0");
+		this.heightPrecision = heightPrecision;
+		this.speedPrecision = speedPrecision;
+	}
+
+	/**
+	 * Writes the state of a water object at the position of the buffer
+	 * @param water Water to write
+	 * @param out Buffer, with at least {@link #getMaxSize(Water)} bytes remaining
+	 * @param delta True to write only the changes since the last snapshot. A key frame is written if there is no
+	 *        previous snapshot or the number of columns has changed
+	 */
+	public void write(Water water, ByteBuffer out, boolean delta) {
+		HeightField field = water.getHeightField();
+		int n = field != null ? field.size() : 0;
+		if (!hasBase || baseHeights.length != n) {
+			delta = false;
+			resize(n);
+		}
+		ParticleSystem particleSystem = particles ? water.getParticles() : null;
+
+		sequence++;
+		hasBase = true;
+		out.put((byte) ((delta ? DELTA : 0) | (particleSystem != null ? PARTICLES : 0)));
+		writeVarInt(out, sequence);
+		writeVarInt(out, n);
+
+		// columns that may not be zero: the moving ones and the ones that were not zero in the last snapshot
+		int from = 0, to = n;
+		if (field != null && field.getFocusStart() == 0 && field.getFocusEnd() == n) {
+			from = n;
+			to = 0;
+			if (!field.isSleeping()) {
+				from = field.getActiveStart();
+				to = field.getActiveEnd();
+			}
+			if (baseStart < baseEnd) {
+				from = Math.min(from, baseStart);
+				to = Math.max(to, baseEnd);
+			}
+			if (from >= to)
+				from = to = 0;
+		}
+
+		int[] heightValues = this.heightValues;
+		int[] speedValues = this.speedValues;
+		int newStart = n, newEnd = 0;
+		for (int i = from; i < to; i++) {
+			int height = Math.round((field.heights[i] - field.targetHeights[i]) / heightPrecision);
+			int speed = Math.round(field.speeds[i] / speedPrecision);
+			heightValues[i] = delta ? height - baseHeights[i] : height;
+			speedValues[i] = delta ? speed - baseSpeeds[i] : speed;
+			baseHeights[i] = height;
+			baseSpeeds[i] = speed;
+			if (height != 0 || speed != 0) {
+				newStart = Math.min(newStart, i);
+				newEnd = i + 1;
+			}
+		}
+		baseStart = newStart;
+		baseEnd = Math.max(newStart, newEnd);
+
+		// alternate runs of calm columns and runs of values
+		int i = 0;
+		while (i < n) {
+			int start = i;
+			i = Math.max(i, from);
+			while (i < to && heightValues[i] == 0 && speedValues[i] == 0)
+				i++;
+			if (i >= to)
+				i = n;
+			writeVarInt(out, i - start);
+			if (i == n)
+				break;
+
+			start = i;
+			while (i < to && (heightValues[i] != 0 || speedValues[i] != 0))
+				i++;
+			writeVarInt(out, i - start);
+			for (int k = start; k < i; k++) {
+				writeVarInt(out, zigzag(heightValues[k]));
+				writeVarInt(out, zigzag(speedValues[k]));
+			}
+		}
+
+		if (particleSystem != null)
+			writeParticles(water, particleSystem, out);
+	}
+
+	/**
+	 * Reads a snapshot at the position of the buffer and applies it to a water object. The columns that change
+	 * are woken, so the water can keep simulating them. If the water runs on a worker thread, it waits for the
+	 * running job and changes the simulated state, which is then copied to the one that is drawn.
+	 * @param in Buffer
+	 * @param water Water with the same number of columns as the one that was written
+	 * @throws IllegalStateException If the snapshot is a delta of a snapshot that was not the last one read, or the
+	 *         number of columns is different
+	 */
+	public void read(ByteBuffer in, Water water) {
+		HeightField field = water.beginEdit();
+		int n = field != null ? field.size() : 0;
+
+		int flags = in.get();
+		boolean delta = (flags & DELTA) != 0;
+		int snapshot = readVarInt(in);
+		int columns = readVarInt(in);
+		if (columns != n)
+			throw new IllegalStateException("The snapshot has " + columns + " columns, but the water has " + n);
+		if (delta && (!hasBase || snapshot != sequence + 1))
+			throw new IllegalStateException("Snapshot " + snapshot + " is a delta of snapshot " + (snapshot - 1)
+					+ ", but the last one read is " + (hasBase ? String.valueOf(sequence) : "none"));
+		if (baseHeights.length != n)
+			resize(n);
+		sequence = snapshot;
+		hasBase = true;
+
+		int i = 0;
+		while (i < n) {
+			int calm = readVarInt(in);
+			if (!delta) {
+				for (int k = i; k < i + calm; k++) {
+					apply(field, k, 0, 0);
+				}
+			}
+			i += calm;
+			if (i >= n)
+				break;
+
+			int count = readVarInt(in);
+			for (int k = i; k < i + count; k++) {
+				int height = unzigzag(readVarInt(in));
+				int speed = unzigzag(readVarInt(in));
+				if (delta)
+					apply(field, k, baseHeights[k] + height, baseSpeeds[k] + speed);
+				else
+					apply(field, k, height, speed);
+			}
+			i += count;
+		}
+
+		if ((flags & PARTICLES) != 0)
+			readParticles(field, water.particles, in);
+		water.endEdit();
+	}
+
+	/**
+	 * @return Max bytes of a snapshot of a water object with its current number of columns and particles
+	 */
+	public int getMaxSize(Water water) {
+		int columns = water.getHeightField() != null ? water.getHeightField().size() : 0;
+		int particleCount = particles && water.getParticles() != null ? water.getParticles().getCapacity() : 0;
+		// header, two run lengths and two values per column, seven values per particle
+		return 16 + columns * 20 + 5 + particleCount * 35;
+	}
+
+	/**
+	 * Forgets the last snapshot, so the next one written is a key frame and the next one read must be a key frame
+	 */
+	public void reset() {
+		hasBase = false;
+		Arrays.fill(baseHeights, 0);
+		Arrays.fill(baseSpeeds, 0);
+		baseStart = baseEnd = 0;
+	}
+
+	public boolean hasParticles() {
+		return particles;
+	}
+
+	/**
+	 * Sets if the splash particles are written. They are written in full in every snapshot, since they live for a
+	 * short time.
+	 * @param particles True to write the particles
+	 */
+	public void setParticles(boolean particles) {
+		this.particles = particles;
+	}
+
+	/**
+	 * @return Number of the last snapshot written or read
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	private void apply(HeightField field, int i, int height, int speed) {
+		baseHeights[i] = height;
+		baseSpeeds[i] = speed;
+		float value = field.targetHeights[i] + height * heightPrecision;
+		field.heights[i] = value;
+		field.previousHeights[i] = value;
+		field.speeds[i] = speed * speedPrecision;
+		if (height != 0 || speed != 0)
+			field.wake(i);
+		else
+			field.markDirty(i, i + 1);
+	}
+
+	private void writeParticles(Water water, ParticleSystem particles, ByteBuffer out) {
+		HeightField field = water.getHeightField();
+		float originX = field != null && field.size() > 0 ? field.x[0] : 0;
+		float originY = field != null && field.size() > 0 ? field.y[0] : 0;
+
+		writeVarInt(out, particles.size());
+		for (int k = 0; k < particles.size(); k++) {
+			int i = particles.slot(k); // from the oldest, so the reader keeps the order
+			writeVarInt(out, zigzag(Math.round((particles.x[i] - originX) / heightPrecision)));
+			writeVarInt(out, zigzag(Math.round((particles.y[i] - originY) / heightPrecision)));
+			writeVarInt(out, zigzag(Math.round((particles.initX[i] - originX) / heightPrecision)));
+			writeVarInt(out, zigzag(Math.round(particles.velocityX[i] / VELOCITY_PRECISION)));
+			writeVarInt(out, zigzag(Math.round(particles.velocityY[i] / VELOCITY_PRECISION)));
+			writeVarInt(out, Math.round(particles.time[i] / TIME_PRECISION));
+			writeVarInt(out, Math.round(particles.radius[i] / heightPrecision));
+		}
+	}
+
+	private void readParticles(HeightField field, ParticleSystem particles, ByteBuffer in) {
+		float originX = field != null && field.size() > 0 ? field.x[0] : 0;
+		float originY = field != null && field.size() > 0 ? field.y[0] : 0;
+
+		if (particles != null)
+			particles.clear();
+		int count = readVarInt(in);
+		for (int k = 0; k < count; k++) {
+			float x = originX + unzigzag(readVarInt(in)) * heightPrecision;
+			float y = originY + unzigzag(readVarInt(in)) * heightPrecision;
+			float initX = originX + unzigzag(readVarInt(in)) * heightPrecision;
+			float velocityX = unzigzag(readVarInt(in)) * VELOCITY_PRECISION;
+			float velocityY = unzigzag(readVarInt(in)) * VELOCITY_PRECISION;
+			float time = readVarInt(in) * TIME_PRECISION;
+			float radius = readVarInt(in) * heightPrecision;
+			if (particles == null)
+				continue;
+			int i = particles.add(x, y, velocityX, velocityY, radius);
+			if (i >= 0) {
+				int slot = particles.slot(i);
+				particles.initX[slot] = initX;
+				particles.time[slot] = time;
+			}
+		}
+	}
+
+	private void resize(int n) {
+		baseHeights = new int[n];
+		baseSpeeds = new int[n];
+		heightValues = new int[n];
+		speedValues = new int[n];
+		baseStart = baseEnd = 0;
+	}
+
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarInt(ByteBuffer out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	private static int readVarInt(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IllegalStateException("Malformed variable-length integer");
+	}
+
+}
@@ -0,0 +1,179 @@
+package com.dream.box2d.water;
+
+/**
+ * Time and counters of the water simulation and drawing in one frame. Give it to a water object with
+ * {@link Water#setStats(WaterStats)}; water objects without stats don't measure anything. The water objects and
+ * renderers that share it add their values during the frame, and {@link #endFrame()} publishes them: the getters
+ * return the values of the last ended frame and the listener is notified. Counters are summed over the water
+ * objects that share the stats.
+ * <p>
+ * The stats are not thread-safe: update the water, step it, draw it and end the frames on the same thread. When the
+ * waves run on a worker (see {@link Water#setAsyncSimulation(java.util.concurrent.Executor)}), the worker keeps its
+ * times apart and they are added to the stats when its job is published, in the frame that sees its state.
+ */
+public class WaterStats {
+
+	/**
+	 * Receives the stats of every frame, for example to send them to a profiler
+	 */
+	public interface Listener {
+		/**
+		 * Called by {@link WaterStats#endFrame()}
+		 * @param stats Stats whose getters return the values of the frame
+		 */
+		void frameEnded(WaterStats stats);
+	}
+
+	private Listener listener;
+	private long frames;
+
+	// values of the current frame
+	long clipNanos; // clipping of the fixtures against the water
+	long forceNanos; // buoyancy, drag and lift
+	long columnNanos; // columns touched by the bodies and splashes
+	long waveNanos; // wave propagation
+	long particleNanos; // splash particles
+	long drawNanos;
+	int pairs; // fixtures in contact with the water
+	int clippedVertices; // vertices of the clipped polygons
+	int particles; // live splash particles
+	int activeColumns; // columns that are moving
+	int allocationsAvoided; // objects reused instead of created
+	int splashesDropped; // splashes that didn't fit in the queue of the worker
+
+	// values of the last ended frame
+	private long lastClipNanos, lastForceNanos, lastColumnNanos, lastWaveNanos, lastParticleNanos, lastDrawNanos;
+	private int lastPairs, lastClippedVertices, lastParticles, lastActiveColumns, lastAllocationsAvoided;
+	private int lastSplashesDropped;
+
+	/**
+	 * Main constructor
+	 */
+	public WaterStats() {
+		this(null);
+	}
+
+	/**
+	 * Constructor that allows to specify the listener
+	 * @param listener Listener notified at the end of every frame, or null
+	 */
+	public WaterStats(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Publishes the values of the current frame and starts a new one. Call it once per frame, after drawing.
+	 */
+	public void endFrame() {
+		lastClipNanos = clipNanos;
+		lastForceNanos = forceNanos;
+		lastColumnNanos = columnNanos;
+		lastWaveNanos = waveNanos;
+		lastParticleNanos = particleNanos;
+		lastDrawNanos = drawNanos;
+		lastPairs = pairs;
+		lastClippedVertices = clippedVertices;
+		lastParticles = particles;
+		lastActiveColumns = activeColumns;
+		lastAllocationsAvoided = allocationsAvoided;
+		lastSplashesDropped = splashesDropped;
+		frames++;
+
+		clipNanos = forceNanos = columnNanos = waveNanos = particleNanos = drawNanos = 0;
+		pairs = clippedVertices = particles = activeColumns = allocationsAvoided = splashesDropped = 0;
+
+		if (listener != null)
+			listener.frameEnded(this);
+	}
+
+	/**
+	 * @return Time of the last frame in every part, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return lastClipNanos + lastForceNanos + lastColumnNanos + lastWaveNanos + lastParticleNanos + lastDrawNanos;
+	}
+
+	public long getClipNanos() {
+		return lastClipNanos;
+	}
+
+	public long getForceNanos() {
+		return lastForceNanos;
+	}
+
+	public long getColumnNanos() {
+		return lastColumnNanos;
+	}
+
+	public long getWaveNanos() {
+		return lastWaveNanos;
+	}
+
+	public long getParticleNanos() {
+		return lastParticleNanos;
+	}
+
+	public long getDrawNanos() {
+		return lastDrawNanos;
+	}
+
+	/**
+	 * @return Pairs of fixtures in contact with the water, summed over the updates of the frame
+	 */
+	public int getPairs() {
+		return lastPairs;
+	}
+
+	/**
+	 * @return Vertices of all the polygons clipped in the frame
+	 */
+	public int getClippedVertices() {
+		return lastClippedVertices;
+	}
+
+	/**
+	 * @return Live splash particles after the last step of the frame
+	 */
+	public int getParticles() {
+		return lastParticles;
+	}
+
+	/**
+	 * @return Moving columns after the last step of the frame
+	 */
+	public int getActiveColumns() {
+		return lastActiveColumns;
+	}
+
+	/**
+	 * @return Objects reused in the frame instead of created: splash particles written in the preallocated store
+	 *         and submerged bodies taken from the pool
+	 */
+	public int getAllocationsAvoided() {
+		return lastAllocationsAvoided;
+	}
+
+	/**
+	 * @return Splashes dropped in the frame because the queue of the worker was full: speeds of the columns touched
+	 *         by the bodies and splash particles. Always 0 without a worker.
+	 */
+	public int getSplashesDropped() {
+		return lastSplashesDropped;
+	}
+
+	/**
+	 * @return Number of ended frames
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	public Listener getListener() {
+		return listener;
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+}
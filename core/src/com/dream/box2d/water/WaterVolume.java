@@ -0,0 +1,489 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.Shape;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+
+/**
+ * Shape of the water of a {@link Water} object: a simple polygon, convex or concave, split once into convex pieces
+ * that Box2D can use as sensor fixtures. The polygon is cut in triangles by ear clipping and the triangles are
+ * merged again, removing every diagonal that leaves a convex piece of at most {@link #MAX_PIECE_VERTICES} vertices
+ * (Hertel-Mehlhorn), so there are few pieces. A convex polygon that fits in one fixture is kept as it is.
+ * <p>
+ * The world vertices and bounding box of every piece are kept, and only computed again when the water body moves,
+ * so the buoyancy doesn't read the water fixtures from Box2D and skips the pieces whose box doesn't touch the body.
+ */
+public class WaterVolume {
+
+	/**
+	 * Max vertices of a Box2D polygon
+	 */
+	public static final int MAX_PIECE_VERTICES = 8;
+
+	/**
+	 * Vertices closer than this, or this close to the line of their neighbours, are removed. Box2D welds closer
+	 * vertices anyway.
+	 */
+	static final float MIN_DISTANCE = 0.005f;
+
+	private final float[] outline; // counter-clockwise vertices of the polygon, in local coordinates
+	private final float minX, minY, maxX, maxY; // local bounding box of the polygon
+
+	private final float[][] vertices; // counter-clockwise vertices of every piece, in local coordinates
+	private final boolean[][] internalEdges; // edges of every piece shared with another piece
+	private final boolean[] hasInternalEdges;
+
+	// pieces in world coordinates, for the last transform of the body
+	final float[][] worldVertices;
+	final float[] worldBounds; // min x, min y, max x and max y of every piece
+	private float x, y, cos = Float.NaN, sin = Float.NaN;
+
+	/**
+	 * Main constructor. Splits the polygon in convex pieces.
+	 * @param polygon Vertices of a simple polygon, interleaved x and y values, in clockwise or counter-clockwise
+	 *        order and relative to the position of the body
+	 * @throws IllegalArgumentException If there are less than three vertices, the polygon has no area or its sides
+	 *         cross
+	 */
+	public WaterVolume(float[] polygon) {
+		if (polygon.length % 2 != 0)
+			throw new IllegalArgumentException("The vertices must be pairs of x and y values");
+		outline = simplify(polygon);
+		if (outline.length < 6)
+			throw new IllegalArgumentException("The polygon must have at least three vertices and some area");
+
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < outline.length; i += 2) {
+			minX = Math.min(minX, outline[i]);
+			maxX = Math.max(maxX, outline[i]);
+			minY = Math.min(minY, outline[i + 1]);
+			maxY = Math.max(maxY, outline[i + 1]);
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+
+		// pieces as indices of outline vertices
+		Array<IntArray> pieces;
+		int n = outline.length / 2;
+		if (n <= MAX_PIECE_VERTICES && isConvex(outline)) {
+			IntArray piece = new IntArray(n);
+			for (int i = 0; i < n; i++) {
+				piece.add(i);
+			}
+			pieces = new Array<IntArray>();
+			pieces.add(piece);
+		} else {
+			pieces = merge(triangulate(outline), n);
+		}
+
+		int count = pieces.size;
+		vertices = new float[count][];
+		internalEdges = new boolean[count][];
+		hasInternalEdges = new boolean[count];
+		worldVertices = new float[count][];
+		worldBounds = new float[count * 4];
+
+		IntIntMap owners = new IntIntMap();
+		for (int p = 0; p < count; p++) {
+			IntArray piece = pieces.get(p);
+			for (int k = 0; k < piece.size; k++) {
+				owners.put(edge(piece.get(k), piece.get((k + 1) % piece.size), n), p);
+			}
+		}
+		for (int p = 0; p < count; p++) {
+			IntArray piece = pieces.get(p);
+			vertices[p] = new float[piece.size * 2];
+			internalEdges[p] = new boolean[piece.size];
+			worldVertices[p] = new float[piece.size * 2];
+			for (int k = 0; k < piece.size; k++) {
+				int a = piece.get(k);
+				int b = piece.get((k + 1) % piece.size);
+				vertices[p][k * 2] = outline[a * 2];
+				vertices[p][k * 2 + 1] = outline[a * 2 + 1];
+				internalEdges[p][k] = owners.containsKey(edge(b, a, n));
+				hasInternalEdges[p] |= internalEdges[p][k];
+			}
+		}
+	}
+
+	/**
+	 * Moves the pieces to the current transform of the body. Nothing is done if the body has not moved.
+	 * @param state State of the water body
+	 */
+	void setTransform(BodyState state) {
+		if (state.x == x && state.y == y && state.cos == cos && state.sin == sin)
+			return;
+		x = state.x;
+		y = state.y;
+		cos = state.cos;
+		sin = state.sin;
+
+		for (int p = 0; p < vertices.length; p++) {
+			float[] local = vertices[p];
+			float[] world = worldVertices[p];
+			float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+			for (int i = 0; i < local.length; i += 2) {
+				float wx = state.worldX(local[i], local[i + 1]);
+				float wy = state.worldY(local[i], local[i + 1]);
+				world[i] = wx;
+				world[i + 1] = wy;
+				minX = Math.min(minX, wx);
+				maxX = Math.max(maxX, wx);
+				minY = Math.min(minY, wy);
+				maxY = Math.max(maxY, wy);
+			}
+			worldBounds[p * 4] = minX;
+			worldBounds[p * 4 + 1] = minY;
+			worldBounds[p * 4 + 2] = maxX;
+			worldBounds[p * 4 + 3] = maxY;
+		}
+	}
+
+	/**
+	 * Finds the part of a fixture that is inside a piece. The bounding box of the piece is checked before clipping,
+	 * and before reading the vertices of a polygon fixture from Box2D if another piece already read them.
+	 * @param piece Index of the piece
+	 * @param fixture Fixture of a dynamic body
+	 * @param state State of the body of the fixture
+	 * @param result It will be set with the vertices, area and centroid of the intersection polygon
+	 * @param circles Polygons used for the circle fixtures, or null to create them every time
+	 * @param polygons World vertices of the polygon fixtures in this update
+	 * @return True if the piece and the fixture intersect
+	 */
+	boolean intersect(int piece, Fixture fixture, BodyState state, ClippedPolygon result, CirclePolygonCache circles,
+			FixtureVertexCache polygons) {
+		float[] world = worldVertices[piece];
+		int count = world.length / 2;
+		int b = piece * 4;
+		float minX = worldBounds[b], minY = worldBounds[b + 1], maxX = worldBounds[b + 2], maxY = worldBounds[b + 3];
+		if (fixture.getShape().getType() != Shape.Type.Polygon)
+			return IntersectionUtils.findIntersectionOfPolygon(world, count, minX, minY, maxX, maxY, fixture, state,
+					result, circles);
+
+		result.count = 0;
+		result.area = 0;
+		FixtureVertexCache.Entry vertices = polygons.get(fixture, state, result.tmp);
+		if (vertices.minX > maxX || minX > vertices.maxX || vertices.minY > maxY || minY > vertices.maxY)
+			return false;
+		return IntersectionUtils.clip(world, count, vertices.vertices, vertices.count, result) > 0;
+	}
+
+	/**
+	 * Checks if a segment lies on a side that a piece shares with another one. These sides are inside the water,
+	 * so they are not leading edges of the submerged part of a body.
+	 * @param piece Index of the piece
+	 * @return True if both ends of the segment are on a shared side of the piece
+	 */
+	boolean isInternal(int piece, float x1, float y1, float x2, float y2) {
+		if (!hasInternalEdges[piece])
+			return false;
+		float[] world = worldVertices[piece];
+		boolean[] internal = internalEdges[piece];
+		int count = internal.length;
+		for (int k = 0; k < count; k++) {
+			if (!internal[k])
+				continue;
+			float ax = world[k * 2], ay = world[k * 2 + 1];
+			int next = (k + 1) % count;
+			float edgeX = world[next * 2] - ax, edgeY = world[next * 2 + 1] - ay;
+			float tolerance = MIN_DISTANCE * (float) Math.sqrt(edgeX * edgeX + edgeY * edgeY);
+			if (Math.abs(edgeX * (y1 - ay) - edgeY * (x1 - ax)) <= tolerance
+					&& Math.abs(edgeX * (y2 - ay) - edgeY * (x2 - ax)) <= tolerance)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param x Local x, between {@link #getMinX()} and {@link #getMaxX()}
+	 * @return Highest local y of the polygon at x, on its upper sides
+	 */
+	public float getTop(float x) {
+		float top = -Float.MAX_VALUE;
+		int n = outline.length;
+		for (int i = 0; i < n; i += 2) {
+			float x1 = outline[i], y1 = outline[i + 1];
+			float x2 = outline[(i + 2) % n], y2 = outline[(i + 3) % n];
+			// the outline is counter-clockwise, so the water is below the sides that go to the left
+			if (x2 >= x1 || x < x2 || x > x1)
+				continue;
+			top = Math.max(top, y1 == y2 ? y1 : y1 + (x - x1) * (y2 - y1) / (x2 - x1));
+		}
+		return top;
+	}
+
+	/**
+	 * Finds the bottom of the highest part of the polygon at x. Where a vertical line crosses the polygon several
+	 * times, for example under an overhang, it is the lower side right under {@link #getTop(float)}, not the lowest
+	 * one, so the water between them is not counted.
+	 * @param x Local x, between {@link #getMinX()} and {@link #getMaxX()}
+	 * @return Local y of the lower side under the top at x
+	 */
+	public float getBottom(float x) {
+		float top = getTop(x);
+		float bottom = -Float.MAX_VALUE;
+		int n = outline.length;
+		for (int i = 0; i < n; i += 2) {
+			float x1 = outline[i], y1 = outline[i + 1];
+			float x2 = outline[(i + 2) % n], y2 = outline[(i + 3) % n];
+			// and above the sides that go to the right
+			if (x2 <= x1 || x < x1 || x > x2)
+				continue;
+			float y = y1 == y2 ? y1 : y1 + (x - x1) * (y2 - y1) / (x2 - x1);
+			if (y <= top)
+				bottom = Math.max(bottom, y);
+		}
+		return bottom;
+	}
+
+	/**
+	 * @return Number of convex pieces, one fixture each
+	 */
+	public int getPieceCount() {
+		return vertices.length;
+	}
+
+	/**
+	 * @param piece Index of the piece
+	 * @return Counter-clockwise vertices of the piece in local coordinates, interleaved x and y values. Must not be
+	 *         changed
+	 */
+	public float[] getVertices(int piece) {
+		return vertices[piece];
+	}
+
+	/**
+	 * @return Counter-clockwise vertices of the whole polygon in local coordinates, without the repeated and
+	 *         aligned ones. Must not be changed
+	 */
+	public float[] getOutline() {
+		return outline;
+	}
+
+	public float getMinX() {
+		return minX;
+	}
+
+	public float getMinY() {
+		return minY;
+	}
+
+	public float getMaxX() {
+		return maxX;
+	}
+
+	public float getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Copies the polygon in counter-clockwise order, without repeated vertices and vertices on the line of their
+	 * neighbours
+	 */
+	private static float[] simplify(float[] polygon) {
+		FloatArray points = new FloatArray(polygon);
+		if (signedArea(points.items, points.size) < 0) {
+			for (int i = 0, j = points.size - 2; i < j; i += 2, j -= 2) {
+				float x = points.items[i], y = points.items[i + 1];
+				points.items[i] = points.items[j];
+				points.items[i + 1] = points.items[j + 1];
+				points.items[j] = x;
+				points.items[j + 1] = y;
+			}
+		}
+
+		boolean removed = true;
+		while (removed && points.size >= 6) {
+			removed = false;
+			for (int i = 0; i < points.size && points.size >= 6; i += 2) {
+				int n = points.size;
+				float[] p = points.items;
+				float px = p[(i - 2 + n) % n], py = p[(i - 1 + n) % n];
+				float x = p[i], y = p[i + 1];
+				float nx = p[(i + 2) % n], ny = p[(i + 3) % n];
+				float lineX = nx - px, lineY = ny - py;
+				float length = (float) Math.sqrt(lineX * lineX + lineY * lineY);
+				float distance = length > 0 ? Math.abs(lineX * (y - py) - lineY * (x - px)) / length : 0;
+				float dx = x - px, dy = y - py;
+				if (dx * dx + dy * dy < MIN_DISTANCE * MIN_DISTANCE || distance < MIN_DISTANCE) {
+					points.removeIndex(i + 1);
+					points.removeIndex(i);
+					removed = true;
+					i -= 2;
+				}
+			}
+		}
+		return points.size >= 6 && signedArea(points.items, points.size) > 0 ? points.toArray() : new float[0];
+	}
+
+	/**
+	 * Cuts a counter-clockwise polygon in triangles, removing one convex vertex with no other vertex inside its
+	 * triangle at a time
+	 * @return Triangles as indices of the vertices
+	 */
+	private static Array<IntArray> triangulate(float[] outline) {
+		int n = outline.length / 2;
+		IntArray remaining = new IntArray(n);
+		for (int i = 0; i < n; i++) {
+			remaining.add(i);
+		}
+
+		Array<IntArray> triangles = new Array<IntArray>(n - 2);
+		int i = 0;
+		int misses = 0;
+		while (remaining.size > 3) {
+			int size = remaining.size;
+			int a = remaining.get((i + size - 1) % size);
+			int b = remaining.get(i % size);
+			int c = remaining.get((i + 1) % size);
+			if (isEar(outline, remaining, a, b, c)) {
+				triangles.add(new IntArray(new int[] { a, b, c }));
+				remaining.removeIndex(i % size);
+				misses = 0;
+			} else {
+				i++;
+				if (++misses > size)
+					throw new IllegalArgumentException("The sides of the polygon must not cross");
+			}
+			i %= remaining.size;
+		}
+		triangles.add(new IntArray(new int[] { remaining.get(0), remaining.get(1), remaining.get(2) }));
+		return triangles;
+	}
+
+	private static boolean isEar(float[] p, IntArray remaining, int a, int b, int c) {
+		float ax = p[a * 2], ay = p[a * 2 + 1];
+		float bx = p[b * 2], by = p[b * 2 + 1];
+		float cx = p[c * 2], cy = p[c * 2 + 1];
+		if (cross(ax, ay, bx, by, cx, cy) <= 0)
+			return false;
+		for (int k = 0; k < remaining.size; k++) {
+			int v = remaining.get(k);
+			if (v == a || v == b || v == c)
+				continue;
+			float x = p[v * 2], y = p[v * 2 + 1];
+			if (cross(ax, ay, bx, by, x, y) >= 0 && cross(bx, by, cx, cy, x, y) >= 0 && cross(cx, cy, ax, ay, x, y) >= 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the diagonals between triangles while the merged piece stays convex and fits in a Box2D polygon
+	 * @param pieces Triangles, as indices of the vertices. They are merged in place
+	 * @param n Number of vertices of the polygon
+	 * @return Pieces left
+	 */
+	private Array<IntArray> merge(Array<IntArray> pieces, int n) {
+		IntIntMap owners = new IntIntMap(); // piece of every directed edge
+		for (int p = 0; p < pieces.size; p++) {
+			IntArray piece = pieces.get(p);
+			for (int k = 0; k < 3; k++) {
+				owners.put(edge(piece.get(k), piece.get((k + 1) % 3), n), p);
+			}
+		}
+
+		// sides shared by two triangles, once each
+		IntArray diagonals = new IntArray();
+		for (int p = 0; p < pieces.size; p++) {
+			IntArray piece = pieces.get(p);
+			for (int k = 0; k < 3; k++) {
+				int a = piece.get(k), b = piece.get((k + 1) % 3);
+				if (a < b && owners.containsKey(edge(b, a, n))) {
+					diagonals.add(a);
+					diagonals.add(b);
+				}
+			}
+		}
+
+		IntArray merged = new IntArray(MAX_PIECE_VERTICES * 2);
+		for (int d = 0; d < diagonals.size; d += 2) {
+			int a = diagonals.get(d);
+			int b = diagonals.get(d + 1);
+			int p = owners.get(edge(a, b, n), -1);
+			int q = owners.get(edge(b, a, n), -1);
+			IntArray first = pieces.get(p);
+			IntArray second = pieces.get(q);
+			if (first.size + second.size - 2 > MAX_PIECE_VERTICES)
+				continue;
+
+			// first goes from b to a, then second from a to b, without repeating a and b
+			merged.clear();
+			int start = first.indexOf(b);
+			for (int j = 0; j < first.size; j++) {
+				merged.add(first.get((start + j) % first.size));
+			}
+			start = second.indexOf(a);
+			for (int j = 1; j < second.size - 1; j++) {
+				merged.add(second.get((start + j) % second.size));
+			}
+			if (!isConvex(merged))
+				continue;
+
+			owners.remove(edge(a, b, n), -1);
+			owners.remove(edge(b, a, n), -1);
+			for (int j = 0; j < second.size; j++) {
+				int key = edge(second.get(j), second.get((j + 1) % second.size), n);
+				if (owners.get(key, -1) == q)
+					owners.put(key, p);
+			}
+			first.clear();
+			first.addAll(merged);
+			pieces.set(q, null);
+		}
+
+		Array<IntArray> result = new Array<IntArray>();
+		for (int p = 0; p < pieces.size; p++) {
+			if (pieces.get(p) != null)
+				result.add(pieces.get(p));
+		}
+		return result;
+	}
+
+	private boolean isConvex(IntArray piece) {
+		int size = piece.size;
+		for (int k = 0; k < size; k++) {
+			int a = piece.get(k), b = piece.get((k + 1) % size), c = piece.get((k + 2) % size);
+			if (cross(outline[a * 2], outline[a * 2 + 1], outline[b * 2], outline[b * 2 + 1], outline[c * 2],
+					outline[c * 2 + 1]) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isConvex(float[] polygon) {
+		int n = polygon.length;
+		for (int i = 0; i < n; i += 2) {
+			if (cross(polygon[i], polygon[i + 1], polygon[(i + 2) % n], polygon[(i + 3) % n], polygon[(i + 4) % n],
+					polygon[(i + 5) % n]) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return Twice the signed area of the triangle, positive if it is counter-clockwise
+	 */
+	private static float cross(float ax, float ay, float bx, float by, float cx, float cy) {
+		return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+	}
+
+	private static float signedArea(float[] polygon, int size) {
+		float area = 0;
+		for (int i = 0; i < size; i += 2) {
+			int next = (i + 2) % size;
+			area += polygon[i] * polygon[next + 1] - polygon[next] * polygon[i + 1];
+		}
+		return area / 2;
+	}
+
+	private static int edge(int a, int b, int n) {
+		return a * n + b;
+	}
+
+}
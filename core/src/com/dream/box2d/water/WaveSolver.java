@@ -0,0 +1,20 @@
+package com.dream.box2d.water;
+
+/**
+ * Integrates the waves of a height field. Solvers only step the moving columns, using
+ * {@link HeightField#beginStep(int, float, float)} and {@link HeightField#endStep()} to keep the range of active
+ * columns, so a calm field costs nothing with any of them.
+ */
+public interface WaveSolver {
+
+	/**
+	 * Runs one step of the waves
+	 * @param field Height field of the water
+	 * @param dampening Dampening value
+	 * @param tension Tension value
+	 * @param spread Spread value
+	 * @param delta Duration of the step, in seconds
+	 */
+	void step(HeightField field, float dampening, float tension, float spread, float delta);
+
+}
@@ -0,0 +1,168 @@
+package com.dream.box2d.water;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the waves and splash particles of a water object on another thread. The worker owns the simulated height
+ * field and particles while a job runs; the other threads read a copy of the last completed state, which is
+ * updated when {@link #step(float, boolean)} finds a finished job, and hand the splashes over through a
+ * {@link SplashQueue}. Only the columns changed by a job are copied.
+ */
+class WaveWorker implements Runnable {
+
+	static final int SPLASH_CAPACITY = 4096;
+
+	private final Water water;
+	private final Executor executor;
+	private final HeightField field; // simulated by the jobs
+	private final ParticleSystem particles;
+	final HeightField displayField; // last completed state
+	final ParticleSystem displayParticles;
+	final SplashQueue splashes = new SplashQueue(SPLASH_CAPACITY);
+	float displayAlpha = 1;
+
+	private volatile boolean running;
+	private boolean completed; // a job finished and its state was not copied yet
+	private Throwable failure;
+	private float pendingDelta; // time not given to a job yet
+	private float delta; // time simulated by the running job
+	private int splashEnd; // splashes applied by the running job, the ones found until it started
+	volatile int focusFrom; // columns simulated by the next job
+	volatile int focusTo;
+
+	/**
+	 * Main constructor. Copies the current state, which must not change on other threads from now on.
+	 * @param water Water whose waves are simulated
+	 * @param field Height field of the water
+	 * @param particles Splash particles of the water, or null
+	 * @param executor Executor where the jobs run
+	 */
+	WaveWorker(Water water, HeightField field, ParticleSystem particles, Executor executor) {
+		this.water = water;
+		this.executor = executor;
+		this.field = field;
+		this.particles = particles;
+		this.displayField = new HeightField(field);
+		this.focusFrom = field.getFocusStart();
+		this.focusTo = field.getFocusEnd();
+		if (particles != null) {
+			displayParticles = new ParticleSystem(particles.getCapacity(), particles.getEvictionPolicy());
+			particles.copyTo(displayParticles);
+		} else {
+			displayParticles = null;
+		}
+	}
+
+	/**
+	 * Starts a job that simulates the time elapsed since the last one. If the last job is still running, the time
+	 * is kept for the next one.
+	 * @param delta Time elapsed since the last call, in seconds
+	 * @param wait True to wait for the running job instead of skipping this one
+	 */
+	void step(float delta, boolean wait) {
+		pendingDelta += delta;
+		if (running) {
+			if (!wait)
+				return;
+			finish();
+		}
+		publish();
+
+		this.delta = pendingDelta;
+		pendingDelta = 0;
+		splashEnd = splashes.mark();
+		running = true;
+		try {
+			executor.execute(this);
+		} catch (RuntimeException e) {
+			// rejected, for example by an executor that was shut down: the time is kept for the next job
+			running = false;
+			pendingDelta = this.delta;
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits for the running job and copies its state. An interrupt doesn't stop the wait, it is kept for the
+	 * caller.
+	 */
+	void finish() {
+		if (running) {
+			boolean interrupted = false;
+			synchronized (this) {
+				while (running) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+		publish();
+	}
+
+	/**
+	 * Waits for the running job, so the simulated state can be changed on the calling thread until the next step
+	 * @return Simulated height field
+	 */
+	HeightField edit() {
+		finish();
+		return field;
+	}
+
+	/**
+	 * Copies the changes made after {@link #edit()} to the state read by the other threads
+	 */
+	void publishEdits() {
+		field.copyChangesTo(displayField);
+		if (particles != null)
+			particles.copyTo(displayParticles);
+	}
+
+	/**
+	 * @return True if a job is running
+	 */
+	boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Copies the state of the last finished job, so the other threads see it
+	 */
+	private void publish() {
+		if (!completed)
+			return;
+		completed = false;
+		if (failure != null) {
+			Throwable cause = failure;
+			failure = null;
+			throw new RuntimeException("The simulation of the water failed", cause);
+		}
+		field.copyChangesTo(displayField);
+		if (particles != null)
+			particles.copyTo(displayParticles);
+		displayAlpha = water.getSimulationAlpha();
+		water.addSimulationStats();
+	}
+
+	@Override
+	public void run() {
+		try {
+			splashes.drainTo(field, particles, splashEnd);
+			field.setFocus(focusFrom, focusTo);
+			water.advance(delta);
+		} catch (Throwable t) {
+			failure = t;
+		} finally {
+			synchronized (this) {
+				completed = true;
+				running = false; // publishes the state of the job
+				notifyAll();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the submerged area of a body with overlapping fixtures is the area of their union
+ */
+public class BodySubmersionTest {
+
+	private static final float EPSILON = 1e-4f;
+
+	private BodySubmersion submersion;
+
+	@Before
+	public void setUp() {
+		submersion = new BodySubmersion();
+		submersion.reset(new BodyState());
+	}
+
+	@Test
+	public void coincidentFixturesCountOnce() {
+		for (int i = 0; i < 4; i++) {
+			submersion.add(box(0, 0, 1, 1));
+		}
+		submersion.removeOverlaps();
+
+		assertEquals(1, submersion.area, EPSILON);
+		assertEquals(0.5f, submersion.getCentroidX(), EPSILON);
+		assertEquals(0.5f, submersion.getCentroidY(), EPSILON);
+	}
+
+	@Test
+	public void areaSharedByThreeFixturesCountsOnce() {
+		submersion.add(box(0, 0, 2, 2));
+		submersion.add(box(1, 0, 3, 2));
+		submersion.add(box(1, 0, 2, 2)); // inside both
+		submersion.removeOverlaps();
+
+		assertEquals(6, submersion.area, EPSILON);
+		assertEquals(1.5f, submersion.getCentroidX(), EPSILON);
+		assertEquals(1, submersion.getCentroidY(), EPSILON);
+	}
+
+	@Test
+	public void touchingFixturesKeepTheirAreas() {
+		submersion.add(box(0, 0, 1, 1));
+		submersion.add(box(1, 0, 2, 1));
+		submersion.add(box(0, 1, 2, 2));
+		submersion.removeOverlaps();
+
+		assertEquals(4, submersion.area, EPSILON);
+		assertEquals(1, submersion.getCentroidX(), EPSILON);
+		assertEquals(1, submersion.getCentroidY(), EPSILON);
+	}
+
+	@Test
+	public void manyOverlappingFixturesAreFastAndExact() {
+		int fixtures = 24;
+		ClippedPolygon[] boxes = new ClippedPolygon[fixtures];
+		for (int i = 0; i < fixtures; i++) {
+			boxes[i] = box(i * 0.1f, 0, i * 0.1f + 2, 1);
+		}
+
+		// warm up, then time the union of every fixture with every other one
+		for (int i = 0; i < 200; i++) {
+			addAll(boxes);
+		}
+		int runs = 200;
+		long time = 0;
+		for (int i = 0; i < runs; i++) {
+			submersion.reset(submersion.state);
+			for (ClippedPolygon box : boxes) {
+				submersion.add(box);
+			}
+			long start = System.nanoTime();
+			submersion.removeOverlaps();
+			time += System.nanoTime() - start;
+		}
+
+		float width = 2 + (fixtures - 1) * 0.1f;
+		assertEquals(width, submersion.area, EPSILON);
+		assertEquals(width / 2, submersion.getCentroidX(), EPSILON);
+		assertEquals(0.5f, submersion.getCentroidY(), EPSILON);
+		assertTrue("union took " + time / runs + " ns", time / runs < 1000000);
+	}
+
+	@Test
+	public void nestedFixturesKeepTheOuterArea() {
+		for (int i = 0; i < 30; i++) {
+			float inset = i * 0.05f;
+			submersion.add(box(inset, inset, 4 - inset * 0.5f, 4 - inset * 0.5f));
+		}
+		submersion.removeOverlaps();
+
+		assertEquals(16, submersion.area, EPSILON);
+		assertEquals(2, submersion.getCentroidX(), EPSILON);
+		assertEquals(2, submersion.getCentroidY(), EPSILON);
+	}
+
+	private void addAll(ClippedPolygon[] polygons) {
+		submersion.reset(submersion.state);
+		for (ClippedPolygon polygon : polygons) {
+			submersion.add(polygon);
+		}
+		submersion.removeOverlaps();
+	}
+
+	/**
+	 * @return Clipping result with the area, centroid and vertices of a box
+	 */
+	private static ClippedPolygon box(float minX, float minY, float maxX, float maxY) {
+		float[] box = new float[] { minX, minY, maxX, minY, maxX, maxY, minX, maxY };
+		float[] all = new float[] { -10, -10, 10, -10, 10, 10, -10, 10 };
+		ClippedPolygon result = new ClippedPolygon();
+		IntersectionUtils.clip(box, 4, all, 4, result);
+		return result;
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.World;
+
+/**
+ * Checks that every contact event reaches the water exactly once and in order, through the ring and its growth
+ */
+public class ContactEventQueueTest {
+
+	private static final int FIXTURES = 8;
+
+	private World world;
+	private Fixture[] fixtures;
+	private RecordingWater water;
+	private int offered; // events offered so far, event i is expectedFixture(i) and expectedBegin(i)
+
+	@Before
+	public void setUp() {
+		world = TestScenes.createWorld();
+		fixtures = new Fixture[FIXTURES];
+		for (int i = 0; i < FIXTURES; i++) {
+			fixtures[i] = TestScenes.createBox(world, i * 2, 0, 0.5f).getFixtureList().first();
+		}
+		water = new RecordingWater(fixtures, 1 << 20);
+		offered = 0;
+	}
+
+	@After
+	public void tearDown() {
+		water.dispose();
+		world.dispose();
+	}
+
+	@Test
+	public void ringWrapsAround() {
+		ContactEventQueue queue = new ContactEventQueue(4);
+		for (int i = 0; i < 10; i++) {
+			offer(queue, 3);
+			assertEquals(3, queue.drain());
+			assertTrue(queue.isEmpty());
+		}
+
+		assertEquals(4, queue.getCapacity());
+		water.assertReceived(offered);
+	}
+
+	@Test
+	public void fullRingGrowsWithoutLosingEvents() {
+		ContactEventQueue queue = new ContactEventQueue(4);
+		offer(queue, 3);
+		assertEquals(3, queue.drain());
+
+		// the ring wraps around and is full, the next events go to bigger rings
+		offer(queue, 4);
+		assertEquals(4, queue.getCapacity());
+		offer(queue, 9);
+		assertEquals(16, queue.getCapacity());
+		assertEquals(13, queue.drain());
+		assertTrue(queue.isEmpty());
+
+		// the bigger ring is reused
+		offer(queue, 12);
+		assertEquals(12, queue.drain());
+		assertEquals(16, queue.getCapacity());
+		water.assertReceived(offered);
+	}
+
+	@Test
+	public void eventsFromAnotherThreadArriveOnceAndInOrder() throws InterruptedException {
+		final ContactEventQueue queue = new ContactEventQueue(16);
+		final int events = 200000;
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				offer(queue, events);
+			}
+		});
+		producer.start();
+
+		long deadline = System.currentTimeMillis() + 10000;
+		int drained = 0;
+		while (drained < events && System.currentTimeMillis() < deadline) {
+			drained += queue.drain();
+		}
+		producer.join();
+
+		assertEquals(events, drained);
+		assertTrue(queue.isEmpty());
+		water.assertReceived(events);
+	}
+
+	/**
+	 * Offers the next events of the expected sequence
+	 * @param count Number of events
+	 */
+	private void offer(ContactEventQueue queue, int count) {
+		for (int i = 0; i < count; i++, offered++) {
+			queue.offer(water, null, fixtures[expectedFixture(offered)], expectedBegin(offered));
+		}
+	}
+
+	private static int expectedFixture(int event) {
+		return event % FIXTURES;
+	}
+
+	private static boolean expectedBegin(int event) {
+		return (event / FIXTURES & 1) == 0;
+	}
+
+	/**
+	 * Water object that only records the contacts it gets
+	 */
+	private static class RecordingWater extends Water {
+
+		private final Fixture[] fixtures;
+		private final int[] received; // index of the fixture of every event, negative if it ends a contact
+		private int count;
+
+		RecordingWater(Fixture[] fixtures, int capacity) {
+			super(false, false);
+			this.fixtures = fixtures;
+			this.received = new int[capacity];
+		}
+
+		@Override
+		public void beginContact(Fixture waterFixture, Fixture bodyFixture) {
+			received[count++] = indexOf(bodyFixture);
+		}
+
+		@Override
+		public void endContact(Fixture waterFixture, Fixture bodyFixture) {
+			received[count++] = -1 - indexOf(bodyFixture);
+		}
+
+		private int indexOf(Fixture fixture) {
+			for (int i = 0; i < fixtures.length; i++) {
+				if (fixtures[i] == fixture)
+					return i;
+			}
+			throw new AssertionError("unknown fixture");
+		}
+
+		void assertReceived(int events) {
+			assertEquals(events, count);
+			for (int i = 0; i < events; i++) {
+				int fixture = expectedFixture(i);
+				assertEquals("event " + i, expectedBegin(i) ? fixture : -1 - fixture, received[i]);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.badlogic.gdx.physics.box2d.Fixture;
+
+/**
+ * Checks the open addressing table of the contact pairs: collisions, removals in the middle of a probe run,
+ * contact counts and growth
+ */
+public class ContactRegistryTest {
+
+	private static final int CAPACITY = 4; // the table has 8 slots until it grows
+	private static final int SLOTS = 8;
+
+	private Fixture water;
+	private Fixture[] bodies;
+
+	@Before
+	public void setUp() {
+		water = createFixture();
+		bodies = new Fixture[64];
+		for (int i = 0; i < bodies.length; i++) {
+			bodies[i] = createFixture();
+		}
+	}
+
+	@Test
+	public void collidingPairsAreAllFound() {
+		ContactRegistry registry = new ContactRegistry(CAPACITY);
+		Fixture[] chain = collidingBodies(4);
+		for (Fixture body : chain) {
+			assertTrue(registry.add(water, body));
+		}
+
+		assertEquals(4, registry.size());
+		for (Fixture body : chain) {
+			assertTrue(registry.contains(water, body));
+		}
+		assertFalse(registry.contains(water, otherBody(chain)));
+	}
+
+	@Test
+	public void pairsAfterARemovedOneInTheProbeRunAreFound() {
+		ContactRegistry registry = new ContactRegistry(CAPACITY);
+		Fixture[] chain = collidingBodies(4);
+		for (Fixture body : chain) {
+			registry.add(water, body);
+		}
+
+		assertTrue(registry.remove(water, chain[1]));
+		assertFalse(registry.contains(water, chain[1]));
+		assertTrue(registry.contains(water, chain[0]));
+		assertTrue(registry.contains(water, chain[2]));
+		assertTrue(registry.contains(water, chain[3]));
+
+		assertTrue(registry.remove(water, chain[0]));
+		assertTrue(registry.contains(water, chain[2]));
+		assertTrue(registry.contains(water, chain[3]));
+		assertEquals(2, registry.size());
+
+		// the freed slots are used again
+		assertTrue(registry.add(water, chain[1]));
+		assertTrue(registry.contains(water, chain[1]));
+		assertEquals(3, registry.size());
+	}
+
+	@Test
+	public void pairIsRemovedWithItsLastContact() {
+		ContactRegistry registry = new ContactRegistry(CAPACITY);
+		assertTrue(registry.add(water, bodies[0]));
+		assertFalse(registry.add(water, bodies[0]));
+		assertFalse(registry.add(water, bodies[0]));
+		assertEquals(1, registry.size());
+		assertEquals(3, registry.getContactCount(0));
+
+		assertFalse(registry.remove(water, bodies[0]));
+		assertFalse(registry.remove(water, bodies[0]));
+		assertTrue(registry.contains(water, bodies[0]));
+		assertEquals(1, registry.getContactCount(0));
+
+		assertTrue(registry.remove(water, bodies[0]));
+		assertFalse(registry.contains(water, bodies[0]));
+		assertTrue(registry.isEmpty());
+		assertFalse(registry.remove(water, bodies[0]));
+	}
+
+	@Test
+	public void pairsAreFoundAfterGrowing() {
+		ContactRegistry registry = new ContactRegistry(CAPACITY);
+		for (int i = 0; i < bodies.length; i++) {
+			assertTrue(registry.add(water, bodies[i]));
+			if (i % 3 == 0)
+				registry.add(water, bodies[i]); // two contacts
+		}
+
+		assertEquals(bodies.length, registry.size());
+		for (int i = 0; i < registry.size(); i++) {
+			int body = indexOf(registry.getBodyFixture(i));
+			assertEquals(body % 3 == 0 ? 2 : 1, registry.getContactCount(i));
+		}
+
+		for (int i = 0; i < bodies.length; i += 2) {
+			registry.remove(water, bodies[i]);
+		}
+		for (int i = 0; i < bodies.length; i++) {
+			boolean removed = i % 2 == 0 && i % 3 != 0;
+			assertEquals("body " + i, !removed, registry.contains(water, bodies[i]));
+		}
+	}
+
+	/**
+	 * @param count Number of bodies
+	 * @return Bodies whose pairs with the water start at the same slot of a table that didn't grow
+	 */
+	private Fixture[] collidingBodies(int count) {
+		for (int home = 0; home < SLOTS; home++) {
+			Fixture[] result = new Fixture[count];
+			int found = 0;
+			for (int i = 0; i < bodies.length && found < count; i++) {
+				if ((ContactRegistry.hash(water, bodies[i]) & (SLOTS - 1)) == home)
+					result[found++] = bodies[i];
+			}
+			if (found == count)
+				return result;
+		}
+		throw new AssertionError("no slot with " + count + " pairs");
+	}
+
+	/**
+	 * @return A body that is not in the given ones
+	 */
+	private Fixture otherBody(Fixture[] used) {
+		for (Fixture body : bodies) {
+			boolean isUsed = false;
+			for (Fixture fixture : used) {
+				isUsed |= fixture == body;
+			}
+			if (!isUsed)
+				return body;
+		}
+		throw new AssertionError();
+	}
+
+	private int indexOf(Fixture fixture) {
+		for (int i = 0; i < bodies.length; i++) {
+			if (bodies[i] == fixture)
+				return i;
+		}
+		throw new AssertionError("unknown fixture");
+	}
+
+	/**
+	 * @return Fixture that is only used for its identity, without a Box2D fixture behind it
+	 */
+	private static Fixture createFixture() {
+		return new Fixture(null, 0) {
+		};
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+/**
+ * Checks that the waves spread on several threads are exactly the same as the ones spread on one, that only the
+ * moving columns are stepped and copied, and that the columns out of the focus catch up when they come back
+ */
+public class HeightFieldTest {
+
+	private static final int COLUMNS = 5000;
+	private static final int TILE_SIZE = 256; // the last tile is not full
+	private static final int STEPS = 200;
+
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void tiledSpreadEqualsSequentialSpread() {
+		HeightField sequential = createField();
+		HeightField tiled = createField();
+		tiled.setParallelism(pool, 0, TILE_SIZE);
+
+		for (int i = 0; i < STEPS; i++) {
+			sequential.step(0.025f, 0.025f, 0.25f, 8);
+			tiled.step(0.025f, 0.025f, 0.25f, 8);
+		}
+
+		assertArrayEquals(sequential.heights, tiled.heights, 0);
+		assertArrayEquals(sequential.speeds, tiled.speeds, 0);
+	}
+
+	@Test
+	public void tiledSpreadEqualsSequentialSpreadOfActiveColumns() {
+		HeightField sequential = createCalmField();
+		HeightField tiled = createCalmField();
+		tiled.setParallelism(pool, 0, TILE_SIZE);
+		for (int i = 1000; i < 1100; i++) {
+			sequential.setSpeed(i, 0.1f);
+			tiled.setSpeed(i, 0.1f);
+		}
+
+		for (int i = 0; i < STEPS; i++) {
+			sequential.step(0.025f, 0.025f, 0.25f, 8);
+			tiled.step(0.025f, 0.025f, 0.25f, 8);
+		}
+
+		assertArrayEquals(sequential.heights, tiled.heights, 0);
+		assertArrayEquals(sequential.speeds, tiled.speeds, 0);
+	}
+
+	@Test
+	public void calmFieldGoesToSleep() {
+		HeightField field = createCalmField();
+		assertEquals(0, field.getActiveStart());
+		assertEquals(COLUMNS, field.getActiveEnd());
+		for (int i = 1000; i < 1100; i++) {
+			field.setSpeed(i, 0.01f);
+		}
+
+		for (int i = 0; i < 5000 && !field.isSleeping(); i++) {
+			field.step(0.025f, 0.025f, 0.25f, 8);
+		}
+
+		assertTrue(field.isSleeping());
+		for (int i = 0; i < COLUMNS; i++) {
+			assertEquals(1, field.heights[i], 0);
+			assertEquals(0, field.speeds[i], 0);
+		}
+	}
+
+	@Test
+	public void wakeOpensTheTouchedColumns() {
+		HeightField field = createSleepingField();
+
+		field.wake(2000, 2010);
+		assertEquals(2000, field.getActiveStart());
+		assertEquals(2010, field.getActiveEnd());
+		field.wake(2020);
+		assertEquals(2000, field.getActiveStart());
+		assertEquals(2021, field.getActiveEnd());
+
+		// touched columns at rest settle in the first step
+		field.step(0.025f, 0.025f, 0.25f, 8);
+		assertTrue(field.isSleeping());
+	}
+
+	@Test
+	public void onlyDirtyColumnsAreCopied() {
+		HeightField field = createSleepingField();
+		HeightField copy = new HeightField(field);
+		field.copyChangesTo(copy);
+
+		field.heights[3000] = 1.5f;
+		field.markDirty(3000, 3001);
+		field.heights[10] = 1.5f; // not marked
+		field.copyChangesTo(copy);
+
+		assertEquals(1.5f, copy.heights[3000], 0);
+		assertEquals(1, copy.heights[10], 0);
+		assertTrue("Marking doesn't wake the columns", copy.isSleeping());
+
+		field.wake(4000, 4002);
+		field.speeds[4001] = 0.2f;
+		field.copyChangesTo(copy);
+		assertEquals(0.2f, copy.speeds[4001], 0);
+		assertEquals(4000, copy.getActiveStart());
+		assertEquals(4002, copy.getActiveEnd());
+	}
+
+	@Test
+	public void relaxedColumnEqualsExplicitSteps() {
+		int column = 80, steps = 37;
+		float dampening = 0.025f, tension = 0.025f;
+		HeightField frozen = createCalmField();
+		HeightField stepped = createCalmField();
+		frozen.set(column, column * 0.04f, 0, 1, 1.2f, 0.05f);
+		stepped.set(column, column * 0.04f, 0, 1, 1.2f, 0.05f);
+
+		frozen.setFocus(0, 50);
+		for (int i = 0; i < steps; i++) {
+			frozen.step(dampening, tension, 0.25f, 8);
+			// without spread the column is on its own, like a frozen one
+			stepped.step(dampening, tension, 0, 8);
+		}
+		assertEquals(1.2f, frozen.heights[column], 0);
+		frozen.setFocus(0, COLUMNS);
+
+		assertEquals(stepped.heights[column], frozen.heights[column], 1e-5f);
+		assertEquals(stepped.speeds[column], frozen.speeds[column], 1e-5f);
+		assertEquals(column, frozen.getActiveStart());
+		assertEquals(column + 1, frozen.getActiveEnd());
+	}
+
+	/**
+	 * @return Field with the same random waves every time
+	 */
+	private static HeightField createField() {
+		RandomXS128 random = new RandomXS128(7);
+		HeightField field = new HeightField(COLUMNS);
+		for (int i = 0; i < COLUMNS; i++) {
+			field.set(i, i * 0.04f, 0, 1, 1 + (random.nextFloat() - 0.5f) * 0.2f, (random.nextFloat() - 0.5f) * 0.05f);
+		}
+		field.setGrid(0, 0.04f);
+		return field;
+	}
+
+	/**
+	 * @return Field at rest whose columns are not moving, so the steps do nothing
+	 */
+	private static HeightField createSleepingField() {
+		HeightField field = createCalmField();
+		field.step(0.025f, 0.025f, 0.25f, 8);
+		assertTrue(field.isSleeping());
+		return field;
+	}
+
+	/**
+	 * @return Field at rest
+	 */
+	private static HeightField createCalmField() {
+		HeightField field = new HeightField(COLUMNS);
+		for (int i = 0; i < COLUMNS; i++) {
+			field.set(i, i * 0.04f, 0, 1, 1, 0);
+		}
+		field.setGrid(0, 0.04f);
+		return field;
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+/**
+ * Checks that the implicit solver is stable with long steps and solves the same system as a dense solve
+ */
+public class ImplicitWaveSolverTest {
+
+	private static final int COLUMNS = 200;
+	private static final float DAMPENING = 0.025f;
+	private static final float SPREAD = 0.25f;
+	private static final float LONG_STEP = 4 / 60f;
+
+	@Test
+	public void longStepsStayBoundedAndKeepTheVolume() {
+		HeightField explicit = createField();
+		HeightField implicit = createField();
+		float volume = volume(implicit);
+		float maxDeviation = maxDeviation(implicit);
+
+		// the explicit solver ignores the step, so it gets the values scaled the way the implicit one scales them
+		float tau = LONG_STEP / ImplicitWaveSolver.REFERENCE_STEP;
+		ExplicitWaveSolver explicitSolver = new ExplicitWaveSolver();
+		ImplicitWaveSolver implicitSolver = new ImplicitWaveSolver();
+		float explicitDeviation = 0, implicitDeviation = 0;
+		for (int i = 0; i < 100; i++) {
+			explicitSolver.step(explicit, DAMPENING * tau, 0, SPREAD * tau * tau, LONG_STEP);
+			implicitSolver.step(implicit, DAMPENING, 0, SPREAD, LONG_STEP);
+			// columns that overflow become NaN, and the explicit step sets those to rest
+			explicitDeviation = Math.max(explicitDeviation, maxDeviation(explicit));
+			implicitDeviation = Math.max(implicitDeviation, maxDeviation(implicit));
+		}
+
+		assertTrue("explicit deviation " + explicitDeviation, explicitDeviation > 100 * maxDeviation);
+		assertTrue("implicit deviation " + implicitDeviation, implicitDeviation <= maxDeviation);
+		assertEquals(volume, volume(implicit), 1e-3f);
+	}
+
+	@Test
+	public void thomasSolveEqualsDenseSolve() {
+		int n = 8;
+		float delta = 1 / 20f;
+		float dampening = 0.05f, tension = 0.03f, spread = 0.2f;
+		RandomXS128 random = new RandomXS128(3);
+		HeightField field = new HeightField(n);
+		for (int i = 0; i < n; i++) {
+			field.set(i, i, 0, 1 + random.nextFloat() * 0.1f, 1 + (random.nextFloat() - 0.5f) * 0.4f,
+					(random.nextFloat() - 0.5f) * 0.1f);
+		}
+		field.setRestThreshold(0);
+		float[] heights = field.heights.clone();
+		float[] speeds = field.speeds.clone();
+
+		new ImplicitWaveSolver().step(field, dampening, tension, spread, delta);
+
+		// the same system as a dense matrix, solved with gaussian elimination
+		double tau = delta / ImplicitWaveSolver.REFERENCE_STEP;
+		double k = tau * tau * spread * ExplicitWaveSolver.DEFAULT_PASSES;
+		double spring = tau * tau * tension;
+		double damping = tau * dampening;
+		double[][] matrix = new double[n][n + 1];
+		for (int i = 0; i < n; i++) {
+			matrix[i][i] = 1 + damping + spring;
+			if (i > 0) {
+				matrix[i][i] += k;
+				matrix[i][i - 1] = -k;
+			}
+			if (i < n - 1) {
+				matrix[i][i] += k;
+				matrix[i][i + 1] = -k;
+			}
+			matrix[i][n] = heights[i] * (1 + damping) + tau * speeds[i] + spring * field.targetHeights[i];
+		}
+		double[] expected = solve(matrix);
+
+		for (int i = 0; i < n; i++) {
+			assertEquals(expected[i], field.heights[i], 1e-5);
+			assertEquals((expected[i] - heights[i]) / tau, field.speeds[i], 1e-5);
+		}
+	}
+
+	/**
+	 * Solves a system with gaussian elimination and partial pivoting
+	 * @param matrix Coefficients of the system, with the right side as the last column. It's modified
+	 * @return Solution
+	 */
+	private static double[] solve(double[][] matrix) {
+		int n = matrix.length;
+		for (int column = 0; column < n; column++) {
+			int pivot = column;
+			for (int row = column + 1; row < n; row++) {
+				if (Math.abs(matrix[row][column]) > Math.abs(matrix[pivot][column]))
+					pivot = row;
+			}
+			double[] swap = matrix[column];
+			matrix[column] = matrix[pivot];
+			matrix[pivot] = swap;
+
+			for (int row = column + 1; row < n; row++) {
+				double factor = matrix[row][column] / matrix[column][column];
+				for (int j = column; j <= n; j++) {
+					matrix[row][j] -= factor * matrix[column][j];
+				}
+			}
+		}
+
+		double[] result = new double[n];
+		for (int row = n - 1; row >= 0; row--) {
+			double sum = matrix[row][n];
+			for (int j = row + 1; j < n; j++) {
+				sum -= matrix[row][j] * result[j];
+			}
+			result[row] = sum / matrix[row][row];
+		}
+		return result;
+	}
+
+	/**
+	 * @return Field with the same random waves every time, whose columns never settle
+	 */
+	private static HeightField createField() {
+		RandomXS128 random = new RandomXS128(11);
+		HeightField field = new HeightField(COLUMNS);
+		for (int i = 0; i < COLUMNS; i++) {
+			field.set(i, i * 0.04f, 0, 1, 1 + (random.nextFloat() - 0.5f) * 0.2f, 0);
+		}
+		field.setGrid(0, 0.04f);
+		field.setRestThreshold(0);
+		return field;
+	}
+
+	private static float volume(HeightField field) {
+		float volume = 0;
+		for (int i = 0; i < field.size; i++) {
+			volume += field.heights[i];
+		}
+		return volume;
+	}
+
+	private static float maxDeviation(HeightField field) {
+		float max = 0;
+		for (int i = 0; i < field.size; i++) {
+			max = Math.max(max, Math.abs(field.heights[i] - field.targetHeights[i]));
+		}
+		return max;
+	}
+
+}
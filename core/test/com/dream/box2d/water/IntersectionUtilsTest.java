@@ -0,0 +1,54 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the submerged part of a circle against the closed form of a circular segment
+ */
+public class IntersectionUtilsTest {
+
+	private static final float EPSILON = 1e-4f;
+	private static final float RADIUS = 0.5f;
+	private static final float CENTER_X = 1, CENTER_Y = 2;
+
+	@Test
+	public void dryCircleHasNoArea() {
+		ClippedPolygon result = submerge(0);
+
+		assertEquals(0, result.getArea(), EPSILON);
+	}
+
+	@Test
+	public void segmentsMatchTheClosedForm() {
+		float[] depths = new float[] { RADIUS / 2, RADIUS, RADIUS * 3 / 2, RADIUS * 2 };
+		for (float depth : depths) {
+			ClippedPolygon result = submerge(depth);
+
+			// the segment of a circle seen under an angle theta from its center
+			double theta = 2 * Math.acos((RADIUS - depth) / RADIUS);
+			double area = RADIUS * RADIUS / 2 * (theta - Math.sin(theta));
+			double sin = Math.sin(theta / 2);
+			double offset = depth < 2 * RADIUS ? 4 * RADIUS * sin * sin * sin / (3 * (theta - Math.sin(theta))) : 0;
+
+			assertEquals("area at depth " + depth, area, result.getArea(), EPSILON);
+			assertEquals("centroid x at depth " + depth, CENTER_X, result.getCentroid().x, EPSILON);
+			assertEquals("centroid y at depth " + depth, CENTER_Y - offset, result.getCentroid().y, EPSILON);
+		}
+	}
+
+	/**
+	 * @param depth Distance from the lowest point of the circle to the surface of the water
+	 * @return Submerged part of the circle under a wide, level surface
+	 */
+	private static ClippedPolygon submerge(float depth) {
+		float surface = CENTER_Y - RADIUS + depth;
+		float[] water = new float[] { -10, -10, 10, -10, 10, surface, -10, surface };
+		ClippedPolygon result = new ClippedPolygon();
+		assertTrue(IntersectionUtils.circleSegment(water, 4, CENTER_X, CENTER_Y, RADIUS, result));
+		return result;
+	}
+
+}
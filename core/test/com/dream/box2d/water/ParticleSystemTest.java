@@ -0,0 +1,62 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks that the particles keep the order in which they were created, so the oldest one is replaced when the
+ * store is full
+ */
+public class ParticleSystemTest {
+
+	@Test
+	public void fullStoreReplacesTheOldest() {
+		ParticleSystem particles = new ParticleSystem(4, ParticleSystem.EvictionPolicy.OLDEST);
+		for (int i = 0; i < 6; i++) {
+			assertEquals(Math.min(i, 3), particles.add(i, 1, 0, 1, 0.1f));
+		}
+
+		assertXs(particles, 2, 3, 4, 5);
+	}
+
+	@Test
+	public void updateKeepsTheOrder() {
+		ParticleSystem particles = new ParticleSystem(4, ParticleSystem.EvictionPolicy.OLDEST);
+		for (int i = 0; i < 6; i++) {
+			// the odd particles fall back into the water in the first update
+			particles.add(i, 1, 0, i % 2 == 0 ? 5 : 0, 0.1f);
+		}
+		particles.update(0.1f, 0);
+
+		assertXs(particles, 2, 4);
+		particles.add(6, 1, 0, 5, 0.1f);
+		particles.add(7, 1, 0, 5, 0.1f);
+		particles.add(8, 1, 0, 5, 0.1f);
+		assertXs(particles, 4, 6, 7, 8);
+	}
+
+	@Test
+	public void copyAndRemoveKeepTheOrder() {
+		ParticleSystem particles = new ParticleSystem(4, ParticleSystem.EvictionPolicy.OLDEST);
+		for (int i = 0; i < 7; i++) {
+			particles.add(i, 1, 0, 1, 0.1f);
+		}
+		ParticleSystem copy = new ParticleSystem(4, ParticleSystem.EvictionPolicy.OLDEST);
+		particles.copyTo(copy);
+		assertXs(copy, 3, 4, 5, 6);
+
+		particles.remove(2);
+		assertXs(particles, 3, 4, 6);
+		particles.setCapacity(2);
+		assertXs(particles, 3, 4);
+	}
+
+	private static void assertXs(ParticleSystem particles, float... xs) {
+		assertEquals(xs.length, particles.size());
+		for (int i = 0; i < xs.length; i++) {
+			assertEquals("Particle " + i, xs[i], particles.getX(i), 0);
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.dream.box2d.water;
+
+import com.badlogic.gdx.backends.headless.HeadlessNativesLoader;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.BodyDef.BodyType;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.CircleShape;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.Shape;
+import com.badlogic.gdx.physics.box2d.World;
+
+/**
+ * Builds the Box2D worlds used by the tests. Only the headless natives are loaded.
+ */
+final class TestScenes {
+
+	static final float TIME_STEP = 1 / 60f;
+
+	private TestScenes() {
+	}
+
+	/**
+	 * Creates a world with gravity that registers the contacts with water objects
+	 * @return New world
+	 */
+	static World createWorld() {
+		HeadlessNativesLoader.load();
+		Box2D.init();
+		World world = new World(new Vector2(0, -10), true);
+		world.setContactListener(new WaterContactListener());
+		return world;
+	}
+
+	/**
+	 * Creates the walls and floor of a tank around a box of water, so the bodies don't drift out of it
+	 * @param x Position of the center of the water
+	 * @param y Position of the center of the water
+	 * @param width Width of the water
+	 * @param height Height of the water
+	 * @return New static body
+	 */
+	static Body createTank(World world, float x, float y, float width, float height) {
+		Body tank = world.createBody(new BodyDef());
+		ChainShape walls = new ChainShape();
+		float left = x - width / 2, right = x + width / 2, bottom = y - height / 2, top = y + height * 2;
+		walls.createChain(new float[] { left, top, left, bottom, right, bottom, right, top });
+		tank.createFixture(walls, 0);
+		walls.dispose();
+		return tank;
+	}
+
+	/**
+	 * Creates a dynamic square
+	 * @return New body
+	 */
+	static Body createBox(World world, float x, float y, float halfSize) {
+		PolygonShape square = new PolygonShape();
+		square.setAsBox(halfSize, halfSize);
+		return createBody(world, x, y, square);
+	}
+
+	/**
+	 * Creates a dynamic circle
+	 * @return New body
+	 */
+	static Body createCircle(World world, float x, float y, float radius) {
+		CircleShape circle = new CircleShape();
+		circle.setRadius(radius);
+		return createBody(world, x, y, circle);
+	}
+
+	/**
+	 * Steps the world and the water like a frame of the game
+	 */
+	static void frame(World world, Water water) {
+		world.step(TIME_STEP, 6, 2);
+		water.update();
+		water.step(TIME_STEP);
+	}
+
+	private static Body createBody(World world, float x, float y, Shape shape) {
+		BodyDef bodyDef = new BodyDef();
+		bodyDef.type = BodyType.DynamicBody;
+		bodyDef.position.set(x, y);
+		Body body = world.createBody(bodyDef);
+
+		FixtureDef fixtureDef = new FixtureDef();
+		fixtureDef.shape = shape;
+		fixtureDef.density = 0.5f;
+		body.createFixture(fixtureDef);
+		shape.dispose();
+		return body;
+	}
+
+}
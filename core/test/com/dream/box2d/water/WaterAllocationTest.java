@@ -0,0 +1,110 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.World;
+
+/**
+ * Checks that the buoyancy and the simulation don't allocate once they are warmed up, with many bodies in the
+ * water and splashes in every frame
+ */
+public class WaterAllocationTest {
+
+	private static final int BODIES = 60;
+	private static final int WARM_UP_FRAMES = 2000;
+	private static final int MEASURED_FRAMES = 300;
+
+	private com.sun.management.ThreadMXBean threads;
+	private World world;
+	private Water water;
+	private Body[] bodies;
+
+	@Before
+	public void setUp() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		world = TestScenes.createWorld();
+		water = new Water();
+		water.createBody(world, 0, 0, 8, 2);
+		TestScenes.createTank(world, 0, 0, 8, 2);
+		bodies = new Body[BODIES];
+		for (int i = 0; i < BODIES; i++) {
+			float x = -3.6f + (i % 20) * 0.36f;
+			float y = 0.5f + (i / 20) * 0.4f;
+			bodies[i] = i % 2 == 0 ? TestScenes.createBox(world, x, y, 0.12f) : TestScenes.createCircle(world, x, y, 0.12f);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		if (world != null)
+			world.dispose();
+	}
+
+	@Test
+	public void updateAndStepDoNotAllocate() {
+		for (int frame = 0; frame < WARM_UP_FRAMES; frame++) {
+			splash(frame);
+			TestScenes.frame(world, water);
+		}
+		assertTrue("The bodies must be in the water", water.getContacts().size() >= BODIES / 2);
+
+		long thread = Thread.currentThread().getId();
+		long overhead = measureOverhead(thread);
+		long updateBytes = 0, stepBytes = 0;
+		for (int frame = 0; frame < MEASURED_FRAMES; frame++) {
+			splash(frame);
+			world.step(TestScenes.TIME_STEP, 6, 2);
+
+			long before = threads.getThreadAllocatedBytes(thread);
+			water.update();
+			long after = threads.getThreadAllocatedBytes(thread);
+			updateBytes += after - before - overhead;
+
+			before = threads.getThreadAllocatedBytes(thread);
+			water.step(TestScenes.TIME_STEP);
+			after = threads.getThreadAllocatedBytes(thread);
+			stepBytes += after - before - overhead;
+		}
+
+		assertEquals("Bytes allocated by update()", 0, updateBytes);
+		assertEquals("Bytes allocated by step()", 0, stepBytes);
+	}
+
+	/**
+	 * Drops one body into the water every few frames, so there are splashes and particles
+	 */
+	private void splash(int frame) {
+		if (frame % 5 != 0)
+			return;
+		Body body = bodies[(frame / 5) % BODIES];
+		body.setTransform(body.getPosition().x, 2, 0);
+		body.setLinearVelocity(0, -8);
+	}
+
+	/**
+	 * @return Bytes allocated by reading the allocated bytes twice
+	 */
+	private long measureOverhead(long thread) {
+		long overhead = Long.MAX_VALUE;
+		for (int i = 0; i < 100; i++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			long after = threads.getThreadAllocatedBytes(thread);
+			overhead = Math.min(overhead, after - before);
+		}
+		return overhead;
+	}
+
+}
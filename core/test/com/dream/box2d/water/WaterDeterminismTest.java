@@ -0,0 +1,129 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.World;
+
+/**
+ * Checks that deterministic water objects give bit-identical waves, particles and bodies whatever the threads
+ */
+public class WaterDeterminismTest {
+
+	private static final int BODIES = 12;
+	private static final int FRAMES = 300;
+
+	private Scene first;
+	private Scene second;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		first = new Scene();
+		second = new Scene();
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+		first.dispose();
+		second.dispose();
+	}
+
+	@Test
+	public void workerGivesTheSameStateAsTheCallingThread() {
+		second.water.setAsyncSimulation(executor);
+		run(false);
+	}
+
+	@Test
+	public void viewIsIgnored() {
+		run(true);
+	}
+
+	/**
+	 * Runs the frames of both scenes, checking they have the same state after every one
+	 * @param view True to move a narrow view over the second scene, like a camera
+	 */
+	private void run(boolean view) {
+		int maxParticles = 0;
+		for (int frame = 0; frame < FRAMES; frame++) {
+			if (view)
+				second.water.setView(-4 + frame * 0.02f, -3 + frame * 0.02f);
+			first.frame(frame);
+			second.frame(frame);
+			assertSameState();
+			maxParticles = Math.max(maxParticles, first.water.getParticles().size());
+		}
+		assertTrue("The scene must have splash particles", maxParticles > 0);
+	}
+
+	private void assertSameState() {
+		HeightField a = first.water.getHeightField(), b = second.water.getHeightField();
+		assertArrayEquals(a.heights, b.heights, 0);
+		assertArrayEquals(a.speeds, b.speeds, 0);
+
+		ParticleSystem p = first.water.getParticles(), q = second.water.getParticles();
+		assertEquals(p.size(), q.size());
+		for (int i = 0; i < p.size(); i++) {
+			assertEquals(p.getX(i), q.getX(i), 0);
+			assertEquals(p.getY(i), q.getY(i), 0);
+			assertEquals(p.getRadius(i), q.getRadius(i), 0);
+		}
+
+		for (int i = 0; i < BODIES; i++) {
+			assertEquals(first.bodies[i].getPosition(), second.bodies[i].getPosition());
+		}
+	}
+
+	/**
+	 * Water with bodies dropped into it every few frames
+	 */
+	private static class Scene {
+
+		final World world;
+		final Water water;
+		final Body[] bodies;
+
+		Scene() {
+			world = TestScenes.createWorld();
+			water = new Water();
+			water.createBody(world, 0, 0, 8, 2);
+			water.setSeed(42);
+			water.setDeterministic(true);
+			TestScenes.createTank(world, 0, 0, 8, 2);
+			bodies = new Body[BODIES];
+			for (int i = 0; i < BODIES; i++) {
+				// big enough to splash
+				float x = -3.3f + i * 0.6f;
+				bodies[i] = i % 2 == 0 ? TestScenes.createBox(world, x, 0.5f, 0.25f)
+						: TestScenes.createCircle(world, x, 0.5f, 0.25f);
+			}
+		}
+
+		void frame(int frame) {
+			if (frame % 5 == 0) {
+				Body body = bodies[(frame / 5) % BODIES];
+				body.setTransform(body.getPosition().x, 2, 0);
+				body.setLinearVelocity(0, -8);
+			}
+			TestScenes.frame(world, water);
+		}
+
+		void dispose() {
+			water.dispose();
+			world.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.badlogic.gdx.physics.box2d.World;
+
+/**
+ * Checks that a water object read from the snapshots of another one has its waves and particles, within the
+ * precision of the serializer
+ */
+public class WaterStateSerializerTest {
+
+	// quantized values are rounded, plus the error of the floats
+	private static final float HEIGHT_ERROR = WaterStateSerializer.DEFAULT_HEIGHT_PRECISION / 2 + 1e-5f;
+	private static final float SPEED_ERROR = WaterStateSerializer.DEFAULT_SPEED_PRECISION / 2 + 1e-6f;
+
+	private World sourceWorld;
+	private World targetWorld;
+	private Water source;
+	private Water target;
+	private WaterStateSerializer writer;
+	private WaterStateSerializer reader;
+	private ByteBuffer buffer;
+
+	@Before
+	public void setUp() {
+		sourceWorld = TestScenes.createWorld();
+		targetWorld = TestScenes.createWorld();
+		source = new Water();
+		source.createBody(sourceWorld, 0, 0, 8, 2);
+		target = new Water();
+		target.createBody(targetWorld, 0, 0, 8, 2);
+
+		writer = new WaterStateSerializer();
+		reader = new WaterStateSerializer();
+		buffer = ByteBuffer.allocate(writer.getMaxSize(source));
+	}
+
+	@After
+	public void tearDown() {
+		sourceWorld.dispose();
+		targetWorld.dispose();
+	}
+
+	@Test
+	public void keyFrameRoundTrip() {
+		disturb(40, 0.2f);
+		transfer(false);
+
+		assertSameState();
+	}
+
+	@Test
+	public void deltaRoundTrip() {
+		disturb(40, 0.2f);
+		transfer(false);
+		disturb(150, -0.15f);
+		int keyFrameSize = writer.getMaxSize(source);
+		transfer(true);
+
+		assertTrue("A delta is smaller than the max size", buffer.limit() < keyFrameSize);
+		assertEquals(writer.getSequence(), reader.getSequence());
+		assertSameState();
+	}
+
+	/**
+	 * Pushes a column and adds a few splash particles, then lets the waves move
+	 */
+	private void disturb(int column, float speed) {
+		source.getColumns().get(column).setSpeed(speed);
+		for (int i = 0; i < 5; i++) {
+			source.particles.add(column * 0.04f - 4, 1.1f, 0.5f * i, 3, 0.05f);
+		}
+		for (int i = 0; i < 20; i++) {
+			source.step(TestScenes.TIME_STEP);
+		}
+	}
+
+	private void transfer(boolean delta) {
+		buffer.clear();
+		writer.write(source, buffer, delta);
+		buffer.flip();
+		reader.read(buffer, target);
+		assertEquals("The whole snapshot is read", buffer.limit(), buffer.position());
+	}
+
+	private void assertSameState() {
+		HeightField expected = source.getHeightField();
+		HeightField actual = target.getHeightField();
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals("Height of column " + i, expected.getHeight(i), actual.getHeight(i), HEIGHT_ERROR);
+			assertEquals("Speed of column " + i, expected.getSpeed(i), actual.getSpeed(i), SPEED_ERROR);
+		}
+
+		ParticleSystem expectedParticles = source.getParticles();
+		ParticleSystem actualParticles = target.getParticles();
+		assertTrue(expectedParticles.size() > 0);
+		assertEquals(expectedParticles.size(), actualParticles.size());
+		for (int i = 0; i < expectedParticles.size(); i++) {
+			assertEquals(expectedParticles.getX(i), actualParticles.getX(i), HEIGHT_ERROR);
+			assertEquals(expectedParticles.getY(i), actualParticles.getY(i), HEIGHT_ERROR);
+			assertEquals(expectedParticles.getRadius(i), actualParticles.getRadius(i), HEIGHT_ERROR);
+		}
+	}
+
+}
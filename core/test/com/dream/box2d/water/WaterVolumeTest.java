@@ -0,0 +1,86 @@
+package com.dream.box2d.water;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks that the convex pieces of a water volume cover its outline
+ */
+public class WaterVolumeTest {
+
+	private static final float EPSILON = 1e-4f;
+
+	// pool of the README: a wide basin with a deep part in the middle
+	private static final float[] POOL = new float[] { -4, 1, -4, -1, -2, -1, -2, -3, 2, -3, 2, -1, 4, -1, 4, 1 };
+
+	@Test
+	public void piecesOfConcavePoolHaveItsArea() {
+		WaterVolume volume = new WaterVolume(POOL);
+
+		assertTrue("A concave pool needs several pieces", volume.getPieceCount() > 1);
+		float area = 0;
+		for (int i = 0; i < volume.getPieceCount(); i++) {
+			float[] piece = volume.getVertices(i);
+			assertTrue(piece.length / 2 <= WaterVolume.MAX_PIECE_VERTICES);
+			assertTrue("Piece " + i + " is counter-clockwise and convex", isConvex(piece));
+			area += area(piece);
+		}
+		assertEquals(Math.abs(area(POOL)), area, EPSILON);
+		assertEquals(24, area, EPSILON);
+	}
+
+	@Test
+	public void boxIsOnePiece() {
+		WaterVolume volume = new WaterVolume(new float[] { -4, -1, 4, -1, 4, 1, -4, 1 });
+
+		assertEquals(1, volume.getPieceCount());
+		assertEquals(16, area(volume.getVertices(0)), EPSILON);
+	}
+
+	@Test
+	public void columnsOfPoolGoFromItsBottomToItsTop() {
+		WaterVolume volume = new WaterVolume(POOL);
+
+		assertEquals(1, volume.getTop(-3), EPSILON);
+		assertEquals(-1, volume.getBottom(-3), EPSILON);
+		assertEquals(1, volume.getTop(0), EPSILON);
+		assertEquals(-3, volume.getBottom(0), EPSILON);
+	}
+
+	@Test
+	public void columnsUnderOverhangTakeTheHighestPart() {
+		// a C open to the right: at x = 0 there is water from -2 to -1 and from 1 to 2
+		WaterVolume volume = new WaterVolume(new float[] { -2, -2, 2, -2, 2, -1, -1, -1, -1, 1, 2, 1, 2, 2, -2, 2 });
+
+		assertEquals(2, volume.getTop(0), EPSILON);
+		assertEquals(1, volume.getBottom(0), EPSILON);
+		assertEquals(2, volume.getTop(-1.5f), EPSILON);
+		assertEquals(-2, volume.getBottom(-1.5f), EPSILON);
+	}
+
+	/**
+	 * @return Signed area, positive if the polygon is counter-clockwise
+	 */
+	private static float area(float[] polygon) {
+		float area = 0;
+		for (int i = 0, n = polygon.length; i < n; i += 2) {
+			int j = (i + 2) % n;
+			area += polygon[i] * polygon[j + 1] - polygon[j] * polygon[i + 1];
+		}
+		return area / 2;
+	}
+
+	private static boolean isConvex(float[] polygon) {
+		for (int i = 0, n = polygon.length; i < n; i += 2) {
+			int j = (i + 2) % n, k = (i + 4) % n;
+			float cross = (polygon[j] - polygon[i]) * (polygon[k + 1] - polygon[j + 1])
+					- (polygon[j + 1] - polygon[i + 1]) * (polygon[k] - polygon[j]);
+			if (cross < 0)
+				return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.dream.water.desktop;
+
+import com.dream.box2d.water.WaterStats;
+
+import jdk.jfr.EventType;
+
+/**
+ * Sends the stats of every frame to the flight recorder. Events are only created while a recording with the
+ * event enabled is running, for example with -XX:StartFlightRecording.
+ */
+public class JfrWaterStats implements WaterStats.Listener {
+
+	private static final EventType TYPE = EventType.getEventType(WaterFrameEvent.class);
+
+	@Override
+	public void frameEnded(WaterStats stats) {
+		if (!TYPE.isEnabled())
+			return;
+
+		WaterFrameEvent event = new WaterFrameEvent();
+
+		event.clip = stats.getClipNanos();
+		event.force = stats.getForceNanos();
+		event.columns = stats.getColumnNanos();
+		event.waves = stats.getWaveNanos();
+		event.particleUpdate = stats.getParticleNanos();
+		event.draw = stats.getDrawNanos();
+		event.pairs = stats.getPairs();
+		event.clippedVertices = stats.getClippedVertices();
+		event.particles = stats.getParticles();
+		event.activeColumns = stats.getActiveColumns();
+		event.allocationsAvoided = stats.getAllocationsAvoided();
+		event.splashesDropped = stats.getSplashesDropped();
+		event.commit();
+	}
+
+}
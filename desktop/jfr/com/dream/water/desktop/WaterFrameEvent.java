@@ -0,0 +1,61 @@
+package com.dream.water.desktop;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event with the {@link com.dream.box2d.water.WaterStats} of one frame
+ */
+@Name("com.dream.water.Frame")
+@Label("Water Frame")
+@Category("Water")
+@Description("Time spent in the water simulation and drawing in one frame")
+class WaterFrameEvent extends Event {
+
+	@Label("Clipping")
+	@Timespan(Timespan.NANOSECONDS)
+	long clip;
+
+	@Label("Forces")
+	@Timespan(Timespan.NANOSECONDS)
+	long force;
+
+	@Label("Columns and Splashes")
+	@Timespan(Timespan.NANOSECONDS)
+	long columns;
+
+	@Label("Waves")
+	@Timespan(Timespan.NANOSECONDS)
+	long waves;
+
+	@Label("Particles")
+	@Timespan(Timespan.NANOSECONDS)
+	long particleUpdate;
+
+	@Label("Draw")
+	@Timespan(Timespan.NANOSECONDS)
+	long draw;
+
+	@Label("Contact Pairs")
+	int pairs;
+
+	@Label("Clipped Vertices")
+	int clippedVertices;
+
+	@Label("Live Particles")
+	int particles;
+
+	@Label("Active Columns")
+	int activeColumns;
+
+	@Label("Allocations Avoided")
+	int allocationsAvoided;
+
+	@Label("Splashes Dropped")
+	int splashesDropped;
+
+}
@@ -3,10 +3,30 @@ package com.dream.water.desktop;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.dream.box2d.GameMain;
+import com.dream.box2d.water.WaterStats;
 
 public class DesktopLauncher {
 	public static void main (String[] arg) {
 		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
-		new LwjglApplication(new GameMain(), config);
+		// -Dwater.jfr=true sends the stats of the water to the flight recorder
+		WaterStats.Listener jfr = Boolean.getBoolean("water.jfr") ? createJfrListener() : null;
+		GameMain game = jfr != null ? new GameMain(jfr) : new GameMain();
+		new LwjglApplication(game, config);
+	}
+
+	/**
+	 * Creates the listener that sends the stats to the flight recorder. It is compiled apart, for Java 8, so it is
+	 * loaded by name and the game still runs on a JVM without the jdk.jfr API.
+	 * @return Listener, or null if the flight recorder is not available
+	 */
+	private static WaterStats.Listener createJfrListener() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (WaterStats.Listener) Class.forName("com.dream.water.desktop.JfrWaterStats").getDeclaredConstructor()
+					.newInstance();
+		} catch (Exception e) {
+			System.err.println("The flight recorder is not available: " + e);
+			return null;
+		}
 	}
 }